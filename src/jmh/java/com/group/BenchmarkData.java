@@ -0,0 +1,99 @@
+package com.group;
+
+import com.group.csv.ProcessResult;
+import com.group.csv.Smell;
+import com.group.pojo.RefactoringRecord;
+import org.refactoringminer.api.RefactoringType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic smells, refactorings and results shaped like the ones of a large project:
+ * 50 modules of 20 packages, 5000 class names, half of the smells on a method.
+ * Generation is seeded, so every benchmark run works on the same data.
+ */
+public final class BenchmarkData {
+
+    public static final String[] SMELL_TYPES = {"Long Method", "Complex Method", "Long Parameter List",
+            "Insufficient Modularization", "Deficient Encapsulation", "Unutilized Abstraction"};
+
+    private static final RefactoringType[] REFACTORING_TYPES = {RefactoringType.EXTRACT_OPERATION,
+            RefactoringType.RENAME_METHOD, RefactoringType.MOVE_CLASS};
+
+    private BenchmarkData() {
+    }
+
+    public static List<Smell> generateSmells(int count, long seed) {
+        Random random = new Random(seed);
+        List<Smell> smells = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String pkg = "org.project.module" + random.nextInt(50) + ".sub" + random.nextInt(20);
+            String className = "Class" + random.nextInt(5_000);
+            String method = random.nextBoolean() ? "method" + i : null;
+            smells.add(new Smell("project", pkg, className, method, SMELL_TYPES[random.nextInt(SMELL_TYPES.length)]));
+        }
+        return smells;
+    }
+
+    /**
+     * Copy of the smells of the previous commit without one smell out of ten, in a different order
+     *
+     * @param previousSmells smells of the previous commit
+     * @return new instances of the smells still present in the actual commit
+     */
+    public static List<Smell> nextCommitSmells(List<Smell> previousSmells) {
+        List<Smell> actualSmells = new ArrayList<>(previousSmells.size());
+        for (int i = 0; i < previousSmells.size(); i++) {
+            Smell s = previousSmells.get(i);
+            if (i % 10 != 0)
+                actualSmells.add(new Smell(s.getProjectName(), s.getPackageName(), s.getClassName(),
+                        s.getMethodName(), s.getCodeSmell()));
+        }
+        Collections.shuffle(actualSmells, new Random(previousSmells.size()));
+        return actualSmells;
+    }
+
+    /**
+     * Refactorings touching the classes (and methods) of randomly chosen smells
+     *
+     * @param smells smells of the previous commit
+     * @param count  number of refactorings
+     * @param seed   random seed
+     * @return refactorings with file path and code element as reported by RefactoringMiner
+     */
+    public static List<RefactoringRecord> generateRefactorings(List<Smell> smells, int count, long seed) {
+        Random random = new Random(seed);
+        List<RefactoringRecord> refactorings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Smell s = smells.get(random.nextInt(smells.size()));
+            String method = s.getMethodName() != null ? s.getMethodName() : "helper" + i;
+            refactorings.add(new RefactoringRecord(REFACTORING_TYPES[random.nextInt(REFACTORING_TYPES.length)],
+                    filePath(s), codeElement(method), "refactoring " + i));
+        }
+        return refactorings;
+    }
+
+    public static List<ProcessResult> generateResults(List<Smell> smells) {
+        List<ProcessResult> results = new ArrayList<>(smells.size());
+        for (int i = 0; i < smells.size(); i++) {
+            Smell s = smells.get(i);
+            int td = (i % 7) - 3;
+            results.add(new ProcessResult(String.format("%040x", i), "Committer " + (i % 100),
+                    "committer" + (i % 100) + "@example.org", s.getClassPath(), s.getMethodName(),
+                    i % 3 == 0 ? "Extract Method" : null, s.getCodeSmell(), td, ProcessResult.getTdClassFor(td),
+                    i % 3 == 0, i % 3 == 1));
+        }
+        return results;
+    }
+
+    public static String filePath(Smell smell) {
+        return "src/main/java/" + smell.getPackageName().replace('.', '/') + "/" + smell.getClassName() + ".java";
+    }
+
+    public static String codeElement(String method) {
+        return "public " + method + "(String name, int count, List<Smell> smells) : void";
+    }
+}
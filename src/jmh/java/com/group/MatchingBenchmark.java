@@ -0,0 +1,110 @@
+package com.group;
+
+import com.group.csv.Smell;
+import com.group.csv.SmellSet;
+import com.group.pojo.RefactoringRecord;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hot paths of the comparison of two commits: normalization of class paths and method names,
+ * matching of smells with refactorings and lookup of the previous smells in the actual commit.
+ * Every benchmark processes a whole commit, except {@link #smellListContains()} that measures a single probe
+ * of the linear scan (a commit costs smellCount probes). {@link #smellSetContains()} includes the index build,
+ * measured alone by {@link #smellSetBuild()}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class MatchingBenchmark {
+
+    private static final int LIST_PROBES = 100;
+
+    @Param({"10000", "100000", "1000000"})
+    int smellCount;
+
+    private List<Smell> previousSmells;
+    private List<Smell> actualSmells;
+    private List<RefactoringRecord> refactorings;
+    private String[] packages;
+    private String[] classNames;
+    private String[] filePaths;
+    private String[] codeElements;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        previousSmells = BenchmarkData.generateSmells(smellCount, 1);
+        actualSmells = BenchmarkData.nextCommitSmells(previousSmells);
+        // one refactoring every 100 smells
+        refactorings = BenchmarkData.generateRefactorings(previousSmells, Math.max(1, smellCount / 100), 3);
+
+        packages = new String[smellCount];
+        classNames = new String[smellCount];
+        filePaths = new String[smellCount];
+        codeElements = new String[smellCount];
+        for (int i = 0; i < smellCount; i++) {
+            Smell s = previousSmells.get(i);
+            packages[i] = s.getPackageName();
+            classNames[i] = s.getClassName();
+            filePaths[i] = BenchmarkData.filePath(s);
+            codeElements[i] = BenchmarkData.codeElement("method" + i);
+        }
+    }
+
+    @Benchmark
+    public void methodName(Blackhole bh) {
+        for (String codeElement : codeElements)
+            bh.consume(RefactoringIndex.getMethodName(codeElement));
+    }
+
+    @Benchmark
+    public void packagesWithClassPath(Blackhole bh) {
+        for (String filePath : filePaths)
+            bh.consume(Utils.getPackagesWithClassPath(filePath));
+    }
+
+    @Benchmark
+    public void smellClassPath(Blackhole bh) {
+        for (int i = 0; i < packages.length; i++)
+            bh.consume(Utils.generateSmellClassPath(packages[i], classNames[i]));
+    }
+
+    @Benchmark
+    public int refactoringIndex() {
+        RefactoringIndex index = new RefactoringIndex(refactorings);
+        int matches = 0;
+        for (Smell s : previousSmells)
+            matches += index.getMatching(s).size();
+        return matches;
+    }
+
+    @Benchmark
+    public SmellSet smellSetBuild() {
+        return new SmellSet(actualSmells);
+    }
+
+    @Benchmark
+    public int smellSetContains() {
+        SmellSet smellSet = new SmellSet(actualSmells);
+        int found = 0;
+        for (Smell s : previousSmells) {
+            if (smellSet.contains(s))
+                found++;
+        }
+        return found;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LIST_PROBES)
+    public int smellListContains() {
+        int found = 0;
+        for (int i = 0; i < LIST_PROBES; i++) {
+            if (actualSmells.contains(previousSmells.get(i)))
+                found++;
+        }
+        return found;
+    }
+}
@@ -0,0 +1,82 @@
+package com.group.csv;
+
+import com.group.BenchmarkData;
+import com.group.Utils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes and reads of the csv files of a run: the results, the filtered smells and the
+ * implementation smells written by Designite.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class CsvBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    int rowCount;
+
+    private Path dir;
+    private List<Smell> smells;
+    private List<ProcessResult> results;
+    private String resultsFile;
+    private String smellsFile;
+    private Path designiteFile;
+    private DesigniteCsvReader designiteReader;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("csv-benchmark");
+        smells = BenchmarkData.generateSmells(rowCount, 7);
+        results = BenchmarkData.generateResults(smells);
+        resultsFile = dir.resolve("results.csv").toString();
+        smellsFile = dir.resolve("smells.csv").toString();
+        CSVService.writeCsvFileWithStrategy(resultsFile, results, ProcessResult.class, true, false);
+
+        // implementation smells as written by Designite, with the cause and line columns
+        designiteFile = dir.resolve("implementationCodeSmells.csv");
+        StringBuilder csv = new StringBuilder("Project Name,Package Name,Type Name,Method Name,Code Smell,Cause of the Smell,Method start line no\n");
+        for (Smell s : smells) {
+            csv.append(s.getProjectName()).append(',').append(s.getPackageName()).append(',')
+                    .append(s.getClassName()).append(',').append(s.getMethodName() != null ? s.getMethodName() : "method")
+                    .append(',').append(s.getCodeSmell()).append(",The tool detected a smell in this method,42\n");
+        }
+        Files.write(designiteFile, csv.toString().getBytes(StandardCharsets.UTF_8));
+        designiteReader = new DesigniteCsvReader(Utils.allowedSmell.keySet());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Utils.deleteDirectory(dir.toFile());
+    }
+
+    @Benchmark
+    public boolean writeResults() {
+        return CSVService.writeCsvFileWithStrategy(resultsFile + ".out", results, ProcessResult.class, true, false);
+    }
+
+    @Benchmark
+    public List readResults() {
+        return CSVService.readCsvFile(resultsFile, ProcessResult.class);
+    }
+
+    @Benchmark
+    public boolean writeSmells() {
+        return CSVService.writeCsvFileWithStrategy(smellsFile, smells, Smell.class, true, false);
+    }
+
+    @Benchmark
+    public int readDesigniteSmells() {
+        int[] read = new int[1];
+        designiteReader.readImplementationSmells(designiteFile, s -> read[0]++);
+        return read[0];
+    }
+}
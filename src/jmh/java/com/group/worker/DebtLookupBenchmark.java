@@ -0,0 +1,67 @@
+package com.group.worker;
+
+import com.group.BenchmarkData;
+import com.group.csv.Smell;
+import com.group.pojo.sonar.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Technical debt lookups of the classes of a commit in a SonarQube analysis:
+ * scan of the components for every class against the {@link DebtIndex} built once per analysis.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class DebtLookupBenchmark {
+
+    @Param({"1000", "10000"})
+    int componentCount;
+
+    @Param({"1000"})
+    int lookupCount;
+
+    private SonarQubeWorker sonarQubeWorker;
+    private Analysis analysis;
+    private String[] classPaths;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        sonarQubeWorker = new SonarQubeWorker("http://localhost:9000", "sonar-scanner", "project", "src");
+
+        List<Smell> smells = BenchmarkData.generateSmells(componentCount, 5);
+        ArrayList<Component> components = new ArrayList<>(componentCount);
+        for (int i = 0; i < componentCount; i++) {
+            Smell s = smells.get(i);
+            String path = BenchmarkData.filePath(s);
+            ArrayList<Measure> measures = new ArrayList<>();
+            measures.add(new Measure("code_smells", String.valueOf(i % 13), false));
+            measures.add(new Measure(DebtIndex.TD_METRIC, String.valueOf(i % 120), i % 120 == 0));
+            components.add(new Component("id" + i, "project:" + path, s.getClassName() + ".java", "FIL", path, "java", measures));
+        }
+        analysis = new Analysis(new Paging(1, componentCount, componentCount),
+                new BaseComponent("project", "project", "project", "TRK", new ArrayList<>()), components);
+
+        // the classes of the results of a commit, most of them known by the analysis
+        classPaths = new String[lookupCount];
+        for (int i = 0; i < lookupCount; i++)
+            classPaths[i] = i % 10 == 0 ? "org/project/Missing" + i + ".java" : smells.get(i % componentCount).getClassPath();
+    }
+
+    @Benchmark
+    public void extractTdFromComponent(Blackhole bh) {
+        for (String classPath : classPaths)
+            bh.consume(sonarQubeWorker.extractTdFromComponent(analysis, classPath));
+    }
+
+    @Benchmark
+    public void debtIndex(Blackhole bh) {
+        DebtIndex index = DebtIndex.of(analysis);
+        for (String classPath : classPaths)
+            bh.consume(index.get(classPath));
+    }
+}
@@ -0,0 +1,603 @@
+package com.group;
+
+import com.group.csv.ResultsFormat;
+import com.group.worker.DesigniteWorker;
+import org.refactoringminer.api.RefactoringType;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Immutable settings of the analysis of a repository. Settings are usually read from application.conf with
+ * {@link #from(Configuration)}, while an application embedding the analysis builds them with {@link #builder()}:
+ * every run then has its own settings, so differently configured analyses can run in the same JVM.
+ * Defaults of the optional settings are the same of reference.conf.
+ */
+public final class AnalysisConfig {
+    private final String repoDir;
+    private final String relativeSrcPath;
+    private final String refactoringMinerBranchToAnalyze;
+    private final boolean refactoringMinerDetectBetweenCommits;
+    private final String refactoringMinerStartCommitId;
+    private final String refactoringMinerEndCommitId;
+    private final boolean writeRefactoringMinerOutputOnFile;
+    private final int refactoringMinerQueueCapacity;
+    private final int refactoringMinerParallelism;
+    private final boolean refactoringMinerStoreEnabled;
+    private final String designiteDir;
+    private final boolean designiteCacheEnabled;
+    private final boolean designiteIncremental;
+    private final String designiteOutputDir;
+    private final boolean designiteKeepOutput;
+    private final boolean designiteWriteFilteredSmells;
+    private final DesigniteWorker.Mode designiteMode;
+    private final String sonarQubeServerBaseUrl;
+    private final String sonarQubeScannerBinDir;
+    private final int sonarQubeHttpConcurrency;
+    private final boolean sonarQubeScanAhead;
+    private final String resultsDir;
+    private final int processParallelism;
+    private final boolean pipelineEnabled;
+    private final int pipelineSmellWorkers;
+    private final int pipelineDebtWorkers;
+    private final int pipelineJoinWorkers;
+    private final int pipelineMaxCommitsInFlight;
+    private final int pipelineStatsIntervalSeconds;
+    private final boolean metricsEnabled;
+    private final int metricsExportIntervalSeconds;
+    private final Set<RefactoringType> filterRefactoringTypes;
+    private final Set<String> filterSmellTypes;
+    private final int resultsQueueCapacity;
+    private final int resultsFlushRows;
+    private final long resultsFlushIntervalMillis;
+    private final ResultsFormat resultsFormat;
+    private final boolean resume;
+
+    private AnalysisConfig(Builder builder) {
+        repoDir = builder.repoDir;
+        relativeSrcPath = builder.relativeSrcPath;
+        refactoringMinerBranchToAnalyze = builder.refactoringMinerBranchToAnalyze;
+        refactoringMinerDetectBetweenCommits = builder.refactoringMinerDetectBetweenCommits;
+        refactoringMinerStartCommitId = builder.refactoringMinerStartCommitId;
+        refactoringMinerEndCommitId = builder.refactoringMinerEndCommitId;
+        writeRefactoringMinerOutputOnFile = builder.writeRefactoringMinerOutputOnFile;
+        refactoringMinerQueueCapacity = Math.max(1, builder.refactoringMinerQueueCapacity);
+        refactoringMinerParallelism = Math.max(1, builder.refactoringMinerParallelism);
+        refactoringMinerStoreEnabled = builder.refactoringMinerStoreEnabled;
+        designiteDir = builder.designiteDir;
+        designiteCacheEnabled = builder.designiteCacheEnabled;
+        designiteIncremental = builder.designiteIncremental;
+        designiteOutputDir = builder.designiteOutputDir;
+        designiteKeepOutput = builder.designiteKeepOutput;
+        designiteWriteFilteredSmells = builder.designiteWriteFilteredSmells;
+        designiteMode = builder.designiteMode;
+        sonarQubeServerBaseUrl = builder.sonarQubeServerBaseUrl;
+        sonarQubeScannerBinDir = builder.sonarQubeScannerBinDir;
+        sonarQubeHttpConcurrency = Math.max(1, builder.sonarQubeHttpConcurrency);
+        sonarQubeScanAhead = builder.sonarQubeScanAhead;
+        resultsDir = builder.resultsDir;
+        processParallelism = Math.max(1, builder.processParallelism);
+        pipelineEnabled = builder.pipelineEnabled;
+        pipelineSmellWorkers = Math.max(1, builder.pipelineSmellWorkers);
+        pipelineDebtWorkers = Math.max(1, builder.pipelineDebtWorkers);
+        pipelineJoinWorkers = Math.max(1, builder.pipelineJoinWorkers);
+        pipelineMaxCommitsInFlight = Math.max(1, builder.pipelineMaxCommitsInFlight);
+        pipelineStatsIntervalSeconds = Math.max(0, builder.pipelineStatsIntervalSeconds);
+        metricsEnabled = builder.metricsEnabled;
+        metricsExportIntervalSeconds = Math.max(0, builder.metricsExportIntervalSeconds);
+        filterRefactoringTypes = builder.filterRefactoringTypes.isEmpty() ? Collections.emptySet()
+                : Collections.unmodifiableSet(EnumSet.copyOf(builder.filterRefactoringTypes));
+        filterSmellTypes = Collections.unmodifiableSet(new LinkedHashSet<>(builder.filterSmellTypes));
+        resultsQueueCapacity = Math.max(1, builder.resultsQueueCapacity);
+        resultsFlushRows = Math.max(1, builder.resultsFlushRows);
+        resultsFlushIntervalMillis = Math.max(1, builder.resultsFlushIntervalMillis);
+        resultsFormat = builder.resultsFormat;
+        resume = builder.resume;
+    }
+
+    /**
+     * @return a builder with the defaults of the optional settings, repoDir and resultsDir must be set
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @param conf configuration loaded from application.conf
+     * @return a builder initialized with the configuration, to change some settings before building
+     */
+    public static Builder from(Configuration conf) {
+        return new Builder()
+                .repoDir(conf.getRepoDir())
+                .relativeSrcPath(conf.getRelativeSrcPath())
+                .refactoringMinerBranchToAnalyze(conf.getRefactoringMinerBranchToAnalyze())
+                .refactoringMinerDetectBetweenCommits(conf.isRefactoringMinerDetectBetweenCommits())
+                .refactoringMinerStartCommitId(conf.getRefactoringMinerStartCommitId())
+                .refactoringMinerEndCommitId(conf.getRefactoringMinerEndCommitId())
+                .writeRefactoringMinerOutputOnFile(conf.isWriteRefactoringMinerOutputOnFile())
+                .refactoringMinerQueueCapacity(conf.getRefactoringMinerQueueCapacity())
+                .refactoringMinerParallelism(conf.getRefactoringMinerParallelism())
+                .refactoringMinerStoreEnabled(conf.isRefactoringMinerStoreEnabled())
+                .designiteDir(conf.getDesigniteDir())
+                .designiteCacheEnabled(conf.isDesigniteCacheEnabled())
+                .designiteIncremental(conf.isDesigniteIncremental())
+                .designiteOutputDir(conf.getDesigniteOutputDir())
+                .designiteKeepOutput(conf.isDesigniteKeepOutput())
+                .designiteWriteFilteredSmells(conf.isDesigniteWriteFilteredSmells())
+                .designiteMode(conf.getDesigniteMode())
+                .sonarQubeServerBaseUrl(conf.getSonarQubeServerBaseUrl())
+                .sonarQubeScannerBinDir(conf.getSonarQubeScannerBinDir())
+                .sonarQubeHttpConcurrency(conf.getSonarQubeHttpConcurrency())
+                .sonarQubeScanAhead(conf.isSonarQubeScanAhead())
+                .resultsDir(conf.getResultsDir())
+                .processParallelism(conf.getProcessParallelism())
+                .pipelineEnabled(conf.isPipelineEnabled())
+                .pipelineSmellWorkers(conf.getPipelineSmellWorkers())
+                .pipelineDebtWorkers(conf.getPipelineDebtWorkers())
+                .pipelineJoinWorkers(conf.getPipelineJoinWorkers())
+                .pipelineMaxCommitsInFlight(conf.getPipelineMaxCommitsInFlight())
+                .pipelineStatsIntervalSeconds(conf.getPipelineStatsIntervalSeconds())
+                .metricsEnabled(conf.isMetricsEnabled())
+                .metricsExportIntervalSeconds(conf.getMetricsExportIntervalSeconds())
+                .filterRefactoringTypes(conf.getFilterRefactoringTypes())
+                .filterSmellTypes(conf.getFilterSmellTypes())
+                .resultsQueueCapacity(conf.getResultsQueueCapacity())
+                .resultsFlushRows(conf.getResultsFlushRows())
+                .resultsFlushIntervalMillis(conf.getResultsFlushIntervalMillis())
+                .resultsFormat(conf.getResultsFormat());
+    }
+
+    /**
+     * @return a builder initialized with these settings, e.g. to analyze another repository with the same settings
+     */
+    public Builder toBuilder() {
+        return new Builder()
+                .repoDir(repoDir)
+                .relativeSrcPath(relativeSrcPath)
+                .refactoringMinerBranchToAnalyze(refactoringMinerBranchToAnalyze)
+                .refactoringMinerDetectBetweenCommits(refactoringMinerDetectBetweenCommits)
+                .refactoringMinerStartCommitId(refactoringMinerStartCommitId)
+                .refactoringMinerEndCommitId(refactoringMinerEndCommitId)
+                .writeRefactoringMinerOutputOnFile(writeRefactoringMinerOutputOnFile)
+                .refactoringMinerQueueCapacity(refactoringMinerQueueCapacity)
+                .refactoringMinerParallelism(refactoringMinerParallelism)
+                .refactoringMinerStoreEnabled(refactoringMinerStoreEnabled)
+                .designiteDir(designiteDir)
+                .designiteCacheEnabled(designiteCacheEnabled)
+                .designiteIncremental(designiteIncremental)
+                .designiteOutputDir(designiteOutputDir)
+                .designiteKeepOutput(designiteKeepOutput)
+                .designiteWriteFilteredSmells(designiteWriteFilteredSmells)
+                .designiteMode(designiteMode)
+                .sonarQubeServerBaseUrl(sonarQubeServerBaseUrl)
+                .sonarQubeScannerBinDir(sonarQubeScannerBinDir)
+                .sonarQubeHttpConcurrency(sonarQubeHttpConcurrency)
+                .sonarQubeScanAhead(sonarQubeScanAhead)
+                .resultsDir(resultsDir)
+                .processParallelism(processParallelism)
+                .pipelineEnabled(pipelineEnabled)
+                .pipelineSmellWorkers(pipelineSmellWorkers)
+                .pipelineDebtWorkers(pipelineDebtWorkers)
+                .pipelineJoinWorkers(pipelineJoinWorkers)
+                .pipelineMaxCommitsInFlight(pipelineMaxCommitsInFlight)
+                .pipelineStatsIntervalSeconds(pipelineStatsIntervalSeconds)
+                .metricsEnabled(metricsEnabled)
+                .metricsExportIntervalSeconds(metricsExportIntervalSeconds)
+                .filterRefactoringTypes(filterRefactoringTypes)
+                .filterSmellTypes(filterSmellTypes)
+                .resultsQueueCapacity(resultsQueueCapacity)
+                .resultsFlushRows(resultsFlushRows)
+                .resultsFlushIntervalMillis(resultsFlushIntervalMillis)
+                .resultsFormat(resultsFormat)
+                .resume(resume);
+    }
+
+    public String getRepoDir() {
+        return repoDir;
+    }
+
+    public String getRelativeSrcPath() {
+        return relativeSrcPath;
+    }
+
+    public String getRefactoringMinerBranchToAnalyze() {
+        return refactoringMinerBranchToAnalyze;
+    }
+
+    public boolean isRefactoringMinerDetectBetweenCommits() {
+        return refactoringMinerDetectBetweenCommits;
+    }
+
+    public String getRefactoringMinerStartCommitId() {
+        return refactoringMinerStartCommitId;
+    }
+
+    public String getRefactoringMinerEndCommitId() {
+        return refactoringMinerEndCommitId;
+    }
+
+    public boolean isWriteRefactoringMinerOutputOnFile() {
+        return writeRefactoringMinerOutputOnFile;
+    }
+
+    public int getRefactoringMinerQueueCapacity() {
+        return refactoringMinerQueueCapacity;
+    }
+
+    public int getRefactoringMinerParallelism() {
+        return refactoringMinerParallelism;
+    }
+
+    public boolean isRefactoringMinerStoreEnabled() {
+        return refactoringMinerStoreEnabled;
+    }
+
+    public String getDesigniteDir() {
+        return designiteDir;
+    }
+
+    public boolean isDesigniteCacheEnabled() {
+        return designiteCacheEnabled;
+    }
+
+    public boolean isDesigniteIncremental() {
+        return designiteIncremental;
+    }
+
+    public String getDesigniteOutputDir() {
+        return designiteOutputDir;
+    }
+
+    public boolean isDesigniteKeepOutput() {
+        return designiteKeepOutput;
+    }
+
+    public boolean isDesigniteWriteFilteredSmells() {
+        return designiteWriteFilteredSmells;
+    }
+
+    public DesigniteWorker.Mode getDesigniteMode() {
+        return designiteMode;
+    }
+
+    public String getSonarQubeServerBaseUrl() {
+        return sonarQubeServerBaseUrl;
+    }
+
+    public String getSonarQubeScannerBinDir() {
+        return sonarQubeScannerBinDir;
+    }
+
+    public int getSonarQubeHttpConcurrency() {
+        return sonarQubeHttpConcurrency;
+    }
+
+    public boolean isSonarQubeScanAhead() {
+        return sonarQubeScanAhead;
+    }
+
+    public String getResultsDir() {
+        return resultsDir;
+    }
+
+    public int getProcessParallelism() {
+        return processParallelism;
+    }
+
+    public boolean isPipelineEnabled() {
+        return pipelineEnabled;
+    }
+
+    public int getPipelineSmellWorkers() {
+        return pipelineSmellWorkers;
+    }
+
+    public int getPipelineDebtWorkers() {
+        return pipelineDebtWorkers;
+    }
+
+    public int getPipelineJoinWorkers() {
+        return pipelineJoinWorkers;
+    }
+
+    public int getPipelineMaxCommitsInFlight() {
+        return pipelineMaxCommitsInFlight;
+    }
+
+    public int getPipelineStatsIntervalSeconds() {
+        return pipelineStatsIntervalSeconds;
+    }
+
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    public int getMetricsExportIntervalSeconds() {
+        return metricsExportIntervalSeconds;
+    }
+
+    public Set<RefactoringType> getFilterRefactoringTypes() {
+        return filterRefactoringTypes;
+    }
+
+    public Set<String> getFilterSmellTypes() {
+        return filterSmellTypes;
+    }
+
+    public int getResultsQueueCapacity() {
+        return resultsQueueCapacity;
+    }
+
+    public int getResultsFlushRows() {
+        return resultsFlushRows;
+    }
+
+    public long getResultsFlushIntervalMillis() {
+        return resultsFlushIntervalMillis;
+    }
+
+    public ResultsFormat getResultsFormat() {
+        return resultsFormat;
+    }
+
+    public boolean isResume() {
+        return resume;
+    }
+
+    /**
+     * Builder of the settings, every setter returns this builder
+     */
+    public static class Builder {
+        private String repoDir = null;
+        private String relativeSrcPath = "src";
+        private String refactoringMinerBranchToAnalyze = null;
+        private boolean refactoringMinerDetectBetweenCommits = false;
+        private String refactoringMinerStartCommitId = null;
+        private String refactoringMinerEndCommitId = null;
+        private boolean writeRefactoringMinerOutputOnFile = false;
+        private int refactoringMinerQueueCapacity = 16;
+        private int refactoringMinerParallelism = 1;
+        private boolean refactoringMinerStoreEnabled = false;
+        private String designiteDir = null;
+        private boolean designiteCacheEnabled = false;
+        private boolean designiteIncremental = false;
+        private String designiteOutputDir = "";
+        private boolean designiteKeepOutput = false;
+        private boolean designiteWriteFilteredSmells = false;
+        private DesigniteWorker.Mode designiteMode = DesigniteWorker.Mode.PROCESS;
+        private String sonarQubeServerBaseUrl = null;
+        private String sonarQubeScannerBinDir = null;
+        private int sonarQubeHttpConcurrency = 4;
+        private boolean sonarQubeScanAhead = false;
+        private String resultsDir = null;
+        private int processParallelism = 1;
+        private boolean pipelineEnabled = false;
+        private int pipelineSmellWorkers = 2;
+        private int pipelineDebtWorkers = 1;
+        private int pipelineJoinWorkers = 1;
+        private int pipelineMaxCommitsInFlight = 8;
+        private int pipelineStatsIntervalSeconds = 60;
+        private boolean metricsEnabled = false;
+        private int metricsExportIntervalSeconds = 60;
+        private Set<RefactoringType> filterRefactoringTypes = Collections.emptySet();
+        private Set<String> filterSmellTypes = Collections.emptySet();
+        private int resultsQueueCapacity = 64;
+        private int resultsFlushRows = 1000;
+        private long resultsFlushIntervalMillis = 30_000;
+        private ResultsFormat resultsFormat = ResultsFormat.CSV;
+        private boolean resume = false;
+
+        private Builder() {
+        }
+
+        public Builder repoDir(String repoDir) {
+            this.repoDir = repoDir;
+            return this;
+        }
+
+        public Builder relativeSrcPath(String relativeSrcPath) {
+            this.relativeSrcPath = relativeSrcPath;
+            return this;
+        }
+
+        public Builder refactoringMinerBranchToAnalyze(String refactoringMinerBranchToAnalyze) {
+            this.refactoringMinerBranchToAnalyze = refactoringMinerBranchToAnalyze;
+            return this;
+        }
+
+        public Builder refactoringMinerDetectBetweenCommits(boolean refactoringMinerDetectBetweenCommits) {
+            this.refactoringMinerDetectBetweenCommits = refactoringMinerDetectBetweenCommits;
+            return this;
+        }
+
+        public Builder refactoringMinerStartCommitId(String refactoringMinerStartCommitId) {
+            this.refactoringMinerStartCommitId = refactoringMinerStartCommitId;
+            return this;
+        }
+
+        public Builder refactoringMinerEndCommitId(String refactoringMinerEndCommitId) {
+            this.refactoringMinerEndCommitId = refactoringMinerEndCommitId;
+            return this;
+        }
+
+        public Builder writeRefactoringMinerOutputOnFile(boolean writeRefactoringMinerOutputOnFile) {
+            this.writeRefactoringMinerOutputOnFile = writeRefactoringMinerOutputOnFile;
+            return this;
+        }
+
+        public Builder refactoringMinerQueueCapacity(int refactoringMinerQueueCapacity) {
+            this.refactoringMinerQueueCapacity = refactoringMinerQueueCapacity;
+            return this;
+        }
+
+        public Builder refactoringMinerParallelism(int refactoringMinerParallelism) {
+            this.refactoringMinerParallelism = refactoringMinerParallelism;
+            return this;
+        }
+
+        public Builder refactoringMinerStoreEnabled(boolean refactoringMinerStoreEnabled) {
+            this.refactoringMinerStoreEnabled = refactoringMinerStoreEnabled;
+            return this;
+        }
+
+        public Builder designiteDir(String designiteDir) {
+            this.designiteDir = designiteDir;
+            return this;
+        }
+
+        public Builder designiteCacheEnabled(boolean designiteCacheEnabled) {
+            this.designiteCacheEnabled = designiteCacheEnabled;
+            return this;
+        }
+
+        public Builder designiteIncremental(boolean designiteIncremental) {
+            this.designiteIncremental = designiteIncremental;
+            return this;
+        }
+
+        public Builder designiteOutputDir(String designiteOutputDir) {
+            this.designiteOutputDir = designiteOutputDir;
+            return this;
+        }
+
+        public Builder designiteKeepOutput(boolean designiteKeepOutput) {
+            this.designiteKeepOutput = designiteKeepOutput;
+            return this;
+        }
+
+        public Builder designiteWriteFilteredSmells(boolean designiteWriteFilteredSmells) {
+            this.designiteWriteFilteredSmells = designiteWriteFilteredSmells;
+            return this;
+        }
+
+        public Builder designiteMode(DesigniteWorker.Mode designiteMode) {
+            this.designiteMode = designiteMode;
+            return this;
+        }
+
+        public Builder sonarQubeServerBaseUrl(String sonarQubeServerBaseUrl) {
+            this.sonarQubeServerBaseUrl = sonarQubeServerBaseUrl;
+            return this;
+        }
+
+        public Builder sonarQubeScannerBinDir(String sonarQubeScannerBinDir) {
+            this.sonarQubeScannerBinDir = sonarQubeScannerBinDir;
+            return this;
+        }
+
+        public Builder sonarQubeHttpConcurrency(int sonarQubeHttpConcurrency) {
+            this.sonarQubeHttpConcurrency = sonarQubeHttpConcurrency;
+            return this;
+        }
+
+        public Builder sonarQubeScanAhead(boolean sonarQubeScanAhead) {
+            this.sonarQubeScanAhead = sonarQubeScanAhead;
+            return this;
+        }
+
+        public Builder resultsDir(String resultsDir) {
+            this.resultsDir = resultsDir;
+            return this;
+        }
+
+        public Builder processParallelism(int processParallelism) {
+            this.processParallelism = processParallelism;
+            return this;
+        }
+
+        public Builder pipelineEnabled(boolean pipelineEnabled) {
+            this.pipelineEnabled = pipelineEnabled;
+            return this;
+        }
+
+        public Builder pipelineSmellWorkers(int pipelineSmellWorkers) {
+            this.pipelineSmellWorkers = pipelineSmellWorkers;
+            return this;
+        }
+
+        public Builder pipelineDebtWorkers(int pipelineDebtWorkers) {
+            this.pipelineDebtWorkers = pipelineDebtWorkers;
+            return this;
+        }
+
+        public Builder pipelineJoinWorkers(int pipelineJoinWorkers) {
+            this.pipelineJoinWorkers = pipelineJoinWorkers;
+            return this;
+        }
+
+        public Builder pipelineMaxCommitsInFlight(int pipelineMaxCommitsInFlight) {
+            this.pipelineMaxCommitsInFlight = pipelineMaxCommitsInFlight;
+            return this;
+        }
+
+        public Builder pipelineStatsIntervalSeconds(int pipelineStatsIntervalSeconds) {
+            this.pipelineStatsIntervalSeconds = pipelineStatsIntervalSeconds;
+            return this;
+        }
+
+        public Builder metricsEnabled(boolean metricsEnabled) {
+            this.metricsEnabled = metricsEnabled;
+            return this;
+        }
+
+        public Builder metricsExportIntervalSeconds(int metricsExportIntervalSeconds) {
+            this.metricsExportIntervalSeconds = metricsExportIntervalSeconds;
+            return this;
+        }
+
+        public Builder filterRefactoringTypes(Set<RefactoringType> filterRefactoringTypes) {
+            this.filterRefactoringTypes = filterRefactoringTypes;
+            return this;
+        }
+
+        public Builder filterSmellTypes(Set<String> filterSmellTypes) {
+            this.filterSmellTypes = filterSmellTypes;
+            return this;
+        }
+
+        public Builder resultsQueueCapacity(int resultsQueueCapacity) {
+            this.resultsQueueCapacity = resultsQueueCapacity;
+            return this;
+        }
+
+        public Builder resultsFlushRows(int resultsFlushRows) {
+            this.resultsFlushRows = resultsFlushRows;
+            return this;
+        }
+
+        public Builder resultsFlushIntervalMillis(long resultsFlushIntervalMillis) {
+            this.resultsFlushIntervalMillis = resultsFlushIntervalMillis;
+            return this;
+        }
+
+        public Builder resultsFormat(ResultsFormat resultsFormat) {
+            this.resultsFormat = resultsFormat;
+            return this;
+        }
+
+        public Builder resume(boolean resume) {
+            this.resume = resume;
+            return this;
+        }
+
+        /**
+         * @return the settings
+         * @throws IllegalArgumentException if a required setting is missing
+         */
+        public AnalysisConfig build() {
+            if (repoDir == null || repoDir.isEmpty())
+                throw new IllegalArgumentException("repoDir is required");
+            if (resultsDir == null || resultsDir.isEmpty())
+                throw new IllegalArgumentException("resultsDir is required");
+            if (!refactoringMinerDetectBetweenCommits && refactoringMinerBranchToAnalyze == null)
+                throw new IllegalArgumentException("refactoringMinerBranchToAnalyze is required to analyze a branch");
+            if (filterRefactoringTypes == null || filterSmellTypes == null)
+                throw new IllegalArgumentException("filters cannot be null, use an empty set to keep all types");
+            if (resultsFormat == null)
+                throw new IllegalArgumentException("resultsFormat is required");
+            return new AnalysisConfig(this);
+        }
+    }
+}
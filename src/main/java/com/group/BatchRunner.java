@@ -0,0 +1,306 @@
+package com.group;
+
+import com.group.csv.ColumnarResultReader;
+import com.group.csv.ColumnarResultWriter;
+import com.group.csv.ResultsFormat;
+import com.group.metrics.Metrics;
+import com.group.metrics.MetricsReporter;
+import com.group.worker.RefactoringMinerWorker;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Analyze a list of repositories in the same JVM, a few at a time. Designite analyses and Sonar Scanner runs of
+ * all the repositories share global limits, so running more repositories does not oversubscribe the machine.
+ * Results of each repository are written in its own folder of results.dir, then merged in a single dataset
+ * with the project of each row.
+ */
+public class BatchRunner {
+
+    private static final Logger logger = Logger.getLogger(BatchRunner.class);
+
+    static final String PROJECT_COLUMN = "project";
+    private static final String CLONES_FOLDER = "repositories";
+
+    private final AnalysisConfig config;
+    private final String resultsDir;
+    private final String cloneDir;
+    private final int parallelRepositories;
+    private final Semaphore designitePermits;
+    private final Semaphore sonarScanPermits;
+    private final boolean metricsEnabled;
+    private final int metricsExportIntervalSeconds;
+
+    /**
+     * @param resume if true skip the commits already processed by a previous run of each repository
+     */
+    public BatchRunner(boolean resume) {
+        Configuration conf = Configuration.getInstance();
+        // settings shared by the repositories, each one gets its own directories and branch
+        config = AnalysisConfig.from(conf).resume(resume).build();
+        resultsDir = config.getResultsDir();
+        cloneDir = conf.getBatchCloneDir().isEmpty() ?
+                Utils.preparePathOsBased(false, resultsDir, CLONES_FOLDER) : conf.getBatchCloneDir();
+        parallelRepositories = conf.getBatchParallelRepositories();
+        designitePermits = new Semaphore(conf.getBatchDesigniteProcesses(), true);
+        sonarScanPermits = new Semaphore(conf.getBatchSonarScans(), true);
+        metricsEnabled = config.isMetricsEnabled();
+        metricsExportIntervalSeconds = config.getMetricsExportIntervalSeconds();
+    }
+
+    /**
+     * Analyze the repositories of a list file and merge their results.
+     * Each line of the file is a repository: a local directory or a git url to clone, optionally followed by
+     * the branch to analyze (default refactoring-miner.branch-to-analyze). Empty lines and lines starting with #
+     * are skipped.
+     *
+     * @param repositoriesFile file with the list of repositories
+     * @throws IOException if the list cannot be read or the merged dataset cannot be written
+     */
+    public void run(String repositoriesFile) throws IOException {
+        List<BatchRepository> repositories = readRepositories(Paths.get(repositoriesFile));
+        logger.info("<Start batch> " + repositories.size() + " repositories, " + parallelRepositories
+                + " at the same time");
+
+        // every repository has its own timers and counters, written all together once in results.dir
+        List<Metrics> repositoryMetrics = new ArrayList<>();
+        for (int i = 0; i < repositories.size(); i++) {
+            repositoryMetrics.add(new Metrics());
+        }
+        MetricsReporter metricsReporter = metricsEnabled ? new MetricsReporter(
+                () -> Metrics.combine(repositoryMetrics), resultsDir, metricsExportIntervalSeconds) : null;
+        try {
+            analyze(repositories, repositoryMetrics);
+        } finally {
+            if (metricsReporter != null) {
+                metricsReporter.close();
+            }
+        }
+        ResultsFormat resultsFormat = config.getResultsFormat();
+        mergeResults(repositories, resultsFormat,
+                Paths.get(Utils.preparePathOsBased(false, resultsDir, resultsFormat.getFilename())));
+        logger.info("Batch finished!");
+    }
+
+    private void analyze(List<BatchRepository> repositories, List<Metrics> repositoryMetrics) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelRepositories, r -> {
+            Thread thread = new Thread(r, "batch-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<Future<Boolean>> analyses = new ArrayList<>();
+        for (int i = 0; i < repositories.size(); i++) {
+            BatchRepository repository = repositories.get(i);
+            Metrics metrics = repositoryMetrics.get(i);
+            analyses.add(executor.submit(() -> analyzeRepository(repository, metrics)));
+        }
+
+        List<String> failed = new ArrayList<>();
+        try {
+            for (int i = 0; i < repositories.size(); i++) {
+                try {
+                    if (!analyses.get(i).get()) {
+                        failed.add(repositories.get(i).name);
+                    }
+                } catch (Exception e) {
+                    failed.add(repositories.get(i).name);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        logger.info((repositories.size() - failed.size()) + " of " + repositories.size() + " repositories analyzed"
+                + (failed.isEmpty() ? "" : ", failed: " + failed));
+    }
+
+    /**
+     * Analyze a repository, cloning it first if needed. A failure is logged and does not stop the batch.
+     *
+     * @param repository repository to analyze
+     * @param metrics    metrics of the analysis of the repository
+     * @return true if the analysis is completed
+     */
+    private boolean analyzeRepository(BatchRepository repository, Metrics metrics) {
+        try {
+            logger.info("Analyze " + repository.name + " (" + repository.dir + ")");
+            new File(repository.resultsDir).mkdirs();
+            if (repository.url != null) {
+                logger.info("Clone " + repository.url + " in " + repository.dir);
+                new RefactoringMinerWorker(repository.dir, repository.url, repository.resultsDir, false);
+            }
+            AnalysisConfig repositoryConfig = config.toBuilder()
+                    .repoDir(repository.dir)
+                    .refactoringMinerBranchToAnalyze(repository.branch)
+                    .resultsDir(repository.resultsDir)
+                    .build();
+            Process.builder(repositoryConfig)
+                    .withSharedPermits(designitePermits, sonarScanPermits)
+                    .withMetrics(metrics)
+                    .withoutMetricsReporter()
+                    .build()
+                    .start();
+            logger.info("Analysis of " + repository.name + " completed");
+            return true;
+        } catch (Exception e) {
+            logger.error("Analysis of " + repository.name + " failed", e);
+            return false;
+        }
+    }
+
+    /**
+     * Write the results of all the repositories in a single file, naming the project of each row: a first column
+     * of the csv file, the source of the row groups of the columnar file.
+     * Results of failed analyses are merged too, they contain only completed commits.
+     *
+     * @param repositories  analyzed repositories, in the order of the merged rows
+     * @param resultsFormat format of the results files
+     * @param mergedFile    merged dataset
+     * @throws IOException if a file cannot be read or written
+     */
+    static void mergeResults(List<BatchRepository> repositories, ResultsFormat resultsFormat, Path mergedFile)
+            throws IOException {
+        if (resultsFormat == ResultsFormat.COLUMNAR) {
+            mergeColumnarResults(repositories, mergedFile);
+            return;
+        }
+        boolean header = true;
+        int rows = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(mergedFile, StandardCharsets.UTF_8)) {
+            for (BatchRepository repository : repositories) {
+                Path results = Paths.get(Utils.preparePathOsBased(false, repository.resultsDir,
+                        ResultsFormat.CSV.getFilename()));
+                if (!Files.exists(results)) {
+                    continue;
+                }
+                String project = quote(repository.name);
+                try (BufferedReader reader = Files.newBufferedReader(results, StandardCharsets.UTF_8)) {
+                    String line = reader.readLine();
+                    if (line == null) {
+                        continue;
+                    }
+                    if (header) {
+                        writer.write(quote(PROJECT_COLUMN) + "," + line);
+                        writer.newLine();
+                        header = false;
+                    }
+                    while ((line = reader.readLine()) != null) {
+                        if (line.isEmpty()) {
+                            continue;
+                        }
+                        writer.write(project + "," + line);
+                        writer.newLine();
+                        rows++;
+                    }
+                }
+            }
+        }
+        logger.info("Merged " + rows + " results in " + mergedFile);
+    }
+
+    // row groups are decoded and written again, since their dictionaries are local
+    private static void mergeColumnarResults(List<BatchRepository> repositories, Path mergedFile) throws IOException {
+        int rows = 0;
+        Files.deleteIfExists(mergedFile);
+        try (ColumnarResultWriter writer = new ColumnarResultWriter(mergedFile.toString())) {
+            for (BatchRepository repository : repositories) {
+                Path results = Paths.get(Utils.preparePathOsBased(false, repository.resultsDir,
+                        ResultsFormat.COLUMNAR.getFilename()));
+                if (!Files.exists(results) || Files.size(results) == 0) {
+                    continue;
+                }
+                try (ColumnarResultReader reader = new ColumnarResultReader(results)) {
+                    ColumnarResultReader.RowGroup rowGroup;
+                    while ((rowGroup = reader.nextRowGroup()) != null) {
+                        writer.write(rowGroup.getRows(), repository.name);
+                        rows += rowGroup.getRows().size();
+                    }
+                }
+            }
+        }
+        logger.info("Merged " + rows + " results in " + mergedFile);
+    }
+
+    // same quoting of the csv files written by CSVService
+    private static String quote(String value) {
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * @param file file with the list of repositories
+     * @return the repositories, each one with its own results folder
+     * @throws IOException if the file cannot be read
+     */
+    List<BatchRepository> readRepositories(Path file) throws IOException {
+        List<BatchRepository> repositories = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\\s+");
+            String location = fields[0];
+            String branch = fields.length > 1 ? fields[1] : config.getRefactoringMinerBranchToAnalyze();
+            boolean remote = isRemote(location);
+
+            String projectName = remote ? getProjectNameFromUrl(location) : Utils.getProjectNameFromRepoDir(location);
+            // results folders of repositories with the same name are kept apart
+            String name = projectName;
+            for (int i = 2; !names.add(name); i++) {
+                name = projectName + "_" + i;
+            }
+            // clone folder keeps the project name, so Designite and SonarQube name the project as in the url
+            String dir = remote ? Utils.preparePathOsBased(false, cloneDir, name, projectName) : location;
+            repositories.add(new BatchRepository(name, dir, remote ? location : null, branch,
+                    Utils.preparePathOsBased(false, resultsDir, name)));
+        }
+        return repositories;
+    }
+
+    private static boolean isRemote(String location) {
+        return location.contains("://") || location.startsWith("git@");
+    }
+
+    private static String getProjectNameFromUrl(String url) {
+        String name = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+        name = name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf(':')) + 1);
+        return name.endsWith(".git") ? name.substring(0, name.length() - ".git".length()) : name;
+    }
+
+    /**
+     * A repository of the batch
+     */
+    static class BatchRepository {
+        private final String name;
+        private final String dir;
+        private final String url;
+        private final String branch;
+        private final String resultsDir;
+
+        BatchRepository(String name, String dir, String url, String branch, String resultsDir) {
+            this.name = name;
+            this.dir = dir;
+            this.url = url;
+            this.branch = branch;
+            this.resultsDir = resultsDir;
+        }
+    }
+}
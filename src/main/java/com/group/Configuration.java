@@ -1,8 +1,15 @@
 package com.group;
 
+import com.group.csv.ResultsFormat;
+import com.group.worker.DesigniteWorker;
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
-import org.apache.commons.lang3.StringUtils;
+import org.refactoringminer.api.RefactoringType;
+
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 public class Configuration {
     private static final Configuration instance = new Configuration();
@@ -14,13 +21,40 @@ public class Configuration {
     private final String refactoringMinerStartCommitId;
     private final String refactoringMinerEndCommitId;
     private final boolean writeRefactoringMinerOutputOnFile;
+    private final int refactoringMinerQueueCapacity;
+    private final int refactoringMinerParallelism;
+    private final boolean refactoringMinerStoreEnabled;
     private final String designiteDir;
+    private final boolean designiteCacheEnabled;
+    private final boolean designiteIncremental;
+    private final String designiteOutputDir;
+    private final boolean designiteKeepOutput;
+    private final boolean designiteWriteFilteredSmells;
+    private final DesigniteWorker.Mode designiteMode;
     private final String sonarQubeServerBaseUrl;
     private final String sonarQubeScannerBinDir;
+    private final int sonarQubeHttpConcurrency;
+    private final boolean sonarQubeScanAhead;
     private final String resultsDir;
-
-    private final boolean isWindowsSystem;
-    private final String currentShell;
+    private final int processParallelism;
+    private final boolean pipelineEnabled;
+    private final int pipelineSmellWorkers;
+    private final int pipelineDebtWorkers;
+    private final int pipelineJoinWorkers;
+    private final int pipelineMaxCommitsInFlight;
+    private final int pipelineStatsIntervalSeconds;
+    private final boolean metricsEnabled;
+    private final Set<RefactoringType> filterRefactoringTypes;
+    private final Set<String> filterSmellTypes;
+    private final int metricsExportIntervalSeconds;
+    private final int resultsQueueCapacity;
+    private final int resultsFlushRows;
+    private final long resultsFlushIntervalMillis;
+    private final ResultsFormat resultsFormat;
+    private final int batchParallelRepositories;
+    private final int batchDesigniteProcesses;
+    private final int batchSonarScans;
+    private final String batchCloneDir;
 
     private Configuration() {
         Config conf = ConfigFactory.load();
@@ -31,13 +65,62 @@ public class Configuration {
         refactoringMinerStartCommitId = conf.getString("refactoring-miner.start-commit-id");
         refactoringMinerEndCommitId = conf.getString("refactoring-miner.end-commit-id");
         writeRefactoringMinerOutputOnFile = conf.getBoolean("refactoring-miner.write-on-file");
+        refactoringMinerQueueCapacity = Math.max(1, conf.getInt("refactoring-miner.queue-capacity"));
+        refactoringMinerParallelism = Math.max(1, conf.getInt("refactoring-miner.parallelism"));
+        refactoringMinerStoreEnabled = conf.getBoolean("refactoring-miner.store-enabled");
         designiteDir = conf.getString("designite.dir");
+        designiteCacheEnabled = conf.getBoolean("designite.cache-enabled");
+        designiteIncremental = conf.getBoolean("designite.incremental");
+        designiteOutputDir = conf.getString("designite.output-dir");
+        designiteKeepOutput = conf.getBoolean("designite.keep-output");
+        designiteWriteFilteredSmells = conf.getBoolean("designite.write-filtered-smells");
+        designiteMode = DesigniteWorker.Mode.of(conf.getString("designite.mode"));
         sonarQubeServerBaseUrl = conf.getString("sonarqube.server.base-url");
         sonarQubeScannerBinDir = conf.getString("sonarqube.scanner.bin-dir");
+        sonarQubeHttpConcurrency = conf.getInt("sonarqube.server.http-concurrency");
+        sonarQubeScanAhead = conf.getBoolean("sonarqube.scanner.scan-ahead");
         resultsDir = conf.getString("results.dir");
+        processParallelism = Math.max(1, conf.getInt("process.parallelism"));
+        pipelineEnabled = conf.getBoolean("pipeline.enabled");
+        pipelineSmellWorkers = Math.max(1, conf.getInt("pipeline.smell-workers"));
+        pipelineDebtWorkers = Math.max(1, conf.getInt("pipeline.debt-workers"));
+        pipelineJoinWorkers = Math.max(1, conf.getInt("pipeline.join-workers"));
+        pipelineMaxCommitsInFlight = Math.max(1, conf.getInt("pipeline.max-commits-in-flight"));
+        pipelineStatsIntervalSeconds = Math.max(0, conf.getInt("pipeline.stats-interval-seconds"));
+        metricsEnabled = conf.getBoolean("metrics.enabled");
+        filterRefactoringTypes = parseRefactoringTypes(conf.getStringList("filters.refactoring-types"));
+        filterSmellTypes = new LinkedHashSet<>(conf.getStringList("filters.smell-types"));
+        metricsExportIntervalSeconds = Math.max(0, conf.getInt("metrics.export-interval-seconds"));
+        resultsQueueCapacity = Math.max(1, conf.getInt("results.queue-capacity"));
+        resultsFlushRows = Math.max(1, conf.getInt("results.flush-rows"));
+        resultsFlushIntervalMillis = Math.max(1, conf.getInt("results.flush-interval-seconds")) * 1000L;
+        resultsFormat = ResultsFormat.of(conf.getString("results.format"));
+        batchParallelRepositories = Math.max(1, conf.getInt("batch.parallel-repositories"));
+        batchDesigniteProcesses = Math.max(1, conf.getInt("batch.designite-processes"));
+        batchSonarScans = Math.max(1, conf.getInt("batch.sonar-scans"));
+        batchCloneDir = conf.getString("batch.clone-dir");
+    }
 
-        isWindowsSystem = StringUtils.containsIgnoreCase(conf.getString("os.name"), "windows");
-        currentShell = isWindowsSystem ? "cmd" : "bash";
+    /**
+     * @param names names of refactoring types, as enum constants (EXTRACT_OPERATION) or display names (Extract Method)
+     * @return the refactoring types
+     */
+    private static Set<RefactoringType> parseRefactoringTypes(List<String> names) {
+        Set<RefactoringType> types = EnumSet.noneOf(RefactoringType.class);
+        for (String name : names) {
+            RefactoringType found = null;
+            for (RefactoringType type : RefactoringType.values()) {
+                if (type.name().equalsIgnoreCase(name.trim()) || name.trim().equalsIgnoreCase(type.getDisplayName())) {
+                    found = type;
+                    break;
+                }
+            }
+            if (found == null) {
+                throw new IllegalArgumentException("Unknown refactoring type in filters.refactoring-types: " + name);
+            }
+            types.add(found);
+        }
+        return types;
     }
 
     public static Configuration getInstance() {
@@ -72,10 +155,46 @@ public class Configuration {
         return writeRefactoringMinerOutputOnFile;
     }
 
+    public int getRefactoringMinerQueueCapacity() {
+        return refactoringMinerQueueCapacity;
+    }
+
+    public int getRefactoringMinerParallelism() {
+        return refactoringMinerParallelism;
+    }
+
+    public boolean isRefactoringMinerStoreEnabled() {
+        return refactoringMinerStoreEnabled;
+    }
+
     public String getDesigniteDir() {
         return designiteDir;
     }
 
+    public boolean isDesigniteCacheEnabled() {
+        return designiteCacheEnabled;
+    }
+
+    public boolean isDesigniteIncremental() {
+        return designiteIncremental;
+    }
+
+    public String getDesigniteOutputDir() {
+        return designiteOutputDir;
+    }
+
+    public boolean isDesigniteKeepOutput() {
+        return designiteKeepOutput;
+    }
+
+    public boolean isDesigniteWriteFilteredSmells() {
+        return designiteWriteFilteredSmells;
+    }
+
+    public DesigniteWorker.Mode getDesigniteMode() {
+        return designiteMode;
+    }
+
     public String getSonarQubeServerBaseUrl() {
         return sonarQubeServerBaseUrl;
     }
@@ -84,15 +203,108 @@ public class Configuration {
         return sonarQubeScannerBinDir;
     }
 
+    public int getSonarQubeHttpConcurrency() {
+        return sonarQubeHttpConcurrency;
+    }
+
+    public boolean isSonarQubeScanAhead() {
+        return sonarQubeScanAhead;
+    }
+
     public String getResultsDir() {
         return resultsDir;
     }
 
+    public int getProcessParallelism() {
+        return processParallelism;
+    }
+
+    public boolean isPipelineEnabled() {
+        return pipelineEnabled;
+    }
+
+    public int getPipelineSmellWorkers() {
+        return pipelineSmellWorkers;
+    }
+
+    public int getPipelineDebtWorkers() {
+        return pipelineDebtWorkers;
+    }
+
+    public int getPipelineJoinWorkers() {
+        return pipelineJoinWorkers;
+    }
+
+    public int getPipelineMaxCommitsInFlight() {
+        return pipelineMaxCommitsInFlight;
+    }
+
+    public int getPipelineStatsIntervalSeconds() {
+        return pipelineStatsIntervalSeconds;
+    }
+
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    public int getMetricsExportIntervalSeconds() {
+        return metricsExportIntervalSeconds;
+    }
+
+    /**
+     * @return refactoring types to analyze, empty for all types
+     */
+    public Set<RefactoringType> getFilterRefactoringTypes() {
+        return filterRefactoringTypes;
+    }
+
+    /**
+     * @return smell types to analyze, empty for the default smells
+     */
+    public Set<String> getFilterSmellTypes() {
+        return filterSmellTypes;
+    }
+
+    public int getResultsQueueCapacity() {
+        return resultsQueueCapacity;
+    }
+
+    public int getResultsFlushRows() {
+        return resultsFlushRows;
+    }
+
+    public long getResultsFlushIntervalMillis() {
+        return resultsFlushIntervalMillis;
+    }
+
+    public ResultsFormat getResultsFormat() {
+        return resultsFormat;
+    }
+
+    public int getBatchParallelRepositories() {
+        return batchParallelRepositories;
+    }
+
+    public int getBatchDesigniteProcesses() {
+        return batchDesigniteProcesses;
+    }
+
+    public int getBatchSonarScans() {
+        return batchSonarScans;
+    }
+
+    /**
+     * @return directory of the repositories cloned by a batch, empty to clone them in results.dir
+     */
+    public String getBatchCloneDir() {
+        return batchCloneDir;
+    }
+
     public boolean isWindowsSystem() {
-        return isWindowsSystem;
+        return Utils.isWindowsSystem;
     }
 
     public String getCurrentShell() {
-        return currentShell;
+        return Utils.currentShell;
     }
 }
@@ -2,6 +2,9 @@ package com.group;
 
 import org.apache.log4j.Logger;
 
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * Main class to run process
  */
@@ -9,10 +12,27 @@ public class Main {
 
     private static final Logger logger = Logger.getLogger(Main.class);
 
+    private static final String RESUME_OPTION = "--resume";
+    private static final String BATCH_OPTION = "--batch";
+
+    /**
+     * @param args {@value #RESUME_OPTION} to skip the commits already processed by an interrupted run,
+     *             {@value #BATCH_OPTION} followed by a file with a repository per line to analyze many repositories
+     */
     public static void main(String[] args) {
-        Process process = new Process();
+        List<String> options = Arrays.asList(args);
+        boolean resume = options.contains(RESUME_OPTION);
+        int batch = options.indexOf(BATCH_OPTION);
         try {
-            process.start();
+            if (batch >= 0) {
+                if (batch + 1 >= args.length) {
+                    logger.error("Missing file with the list of repositories after " + BATCH_OPTION);
+                    return;
+                }
+                new BatchRunner(resume).run(args[batch + 1]);
+            } else {
+                new Process(resume).start();
+            }
         } catch (Exception e) {
             logger.error(e);
         }
@@ -1,105 +1,143 @@
 package com.group;
 
-import com.group.csv.CSVService;
+import com.group.cache.RefactoringStore;
+import com.group.cache.SmellCache;
+import com.group.checkpoint.CheckpointJournal;
 import com.group.csv.ProcessResult;
+import com.group.csv.ResultSink;
+import com.group.csv.ResultsFormat;
 import com.group.csv.Smell;
+import com.group.csv.SmellSet;
+import com.group.metrics.Metrics;
+import com.group.metrics.MetricsReporter;
+import com.group.metrics.Timer;
+import com.group.pipeline.Pipeline;
+import com.group.pipeline.Stage;
 import com.group.pojo.Commit;
 import com.group.pojo.InfoCommit;
-import com.group.pojo.sonar.Analysis;
+import com.group.pojo.RefactoringRecord;
+import com.group.pojo.sonar.DebtIndex;
+import com.group.worker.CommitStream;
 import com.group.worker.DesigniteWorker;
 import com.group.worker.RefactoringMinerWorker;
 import com.group.worker.SonarQubeWorker;
+import com.group.worker.SnapshotManager;
+import com.group.worker.SonarScanRegistry;
 import org.apache.log4j.Logger;
-import org.refactoringminer.api.Refactoring;
 
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.StringTokenizer;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 public class Process {
 
-    static final String RESULTS_PROCESS_FILENAME = "datasets.csv";
+    private static final String WORKTREES_FOLDER = "worktrees";
     private static final Logger logger = Logger.getLogger(Process.class);
+    private final AnalysisConfig config;
+    private final WorkerFactory workerFactory;
     private final String repoDir;
-    private final String relativeSrcPath;
     private final String branchName;
     private final boolean refactoringMinerDetectBetweenCommits;
+    // commits of a branch are mined newest first, commits of a range oldest first
+    private final boolean commitsNewestFirst;
     private final String refactoringMinerStartCommitId;
     private final String refactoringMinerEndCommitId;
-    private final boolean writeRefactoringMinerOutputOnFile;
-    private final String designiteDir;
-    private final String sonarQubeServerBaseUrl;
-    private final String sonarQubeScannerBinDir;
+    private final int refactoringMinerQueueCapacity;
+    private final int refactoringMinerParallelism;
+    private final boolean refactoringMinerStoreEnabled;
+    private final SmellCache smellCache;
+    private final boolean designiteIncremental;
     private final String resultsDir;
-    private List<ProcessResult> resultList;
+    private final int parallelism;
+    private final boolean sonarQubeScanAhead;
+    private final boolean pipelineEnabled;
+    private final int pipelineSmellWorkers;
+    private final int pipelineDebtWorkers;
+    private final int pipelineJoinWorkers;
+    private final int pipelineMaxCommitsInFlight;
+    private final int pipelineStatsIntervalSeconds;
+    private final boolean metricsEnabled;
+    private final int metricsExportIntervalSeconds;
+    private final int resultsQueueCapacity;
+    private final int resultsFlushRows;
+    private final long resultsFlushIntervalMillis;
+    private final ResultsFormat resultsFormat;
+    private final boolean resume;
+    private final Semaphore designitePermits;
+    private final Semaphore sonarScanPermits;
+    private final Metrics metrics;
+    private CheckpointJournal checkpointJournal;
+    private ResultSink<ProcessResult> resultSink;
+    private SonarScanRegistry sonarScanRegistry;
+    // page requests of all the SonarQube workers of the process share a bounded pool
+    private ExecutorService sonarHttpExecutor;
 
     public Process() {
-        Configuration conf = Configuration.getInstance();
-        repoDir = conf.getRepoDir();
-        relativeSrcPath = conf.getRelativeSrcPath();
-        branchName = conf.getRefactoringMinerBranchToAnalyze();
-        refactoringMinerDetectBetweenCommits = conf.isRefactoringMinerDetectBetweenCommits();
-        refactoringMinerStartCommitId = conf.getRefactoringMinerStartCommitId();
-        refactoringMinerEndCommitId = conf.getRefactoringMinerEndCommitId();
-        writeRefactoringMinerOutputOnFile = conf.isWriteRefactoringMinerOutputOnFile();
-        designiteDir = conf.getDesigniteDir();
-        sonarQubeServerBaseUrl = conf.getSonarQubeServerBaseUrl();
-        sonarQubeScannerBinDir = conf.getSonarQubeScannerBinDir();
-        resultsDir = conf.getResultsDir();
-
-        resultList = new ArrayList<>();
-        CSVService.writeCsvFileWithStrategy(
-                Utils.preparePathOsBased(false, resultsDir, RESULTS_PROCESS_FILENAME),
-                resultList,
-                ProcessResult.class,
-                true,
-                false);
+        this(false);
     }
 
     /**
-     * Check if two given string contain filepath are the same
+     * Process of the repository of application.conf
      *
-     * @param refClassFilePath   refactoring class filepath
-     * @param smellClassFilePath smell class filepath
-     * @return true if the path are equals
+     * @param resume if true skip the commits already processed by a previous run, keeping its results
      */
-    private static boolean isSamePathClass(String refClassFilePath, String smellClassFilePath) {
-        return refClassFilePath != null && refClassFilePath.equals(smellClassFilePath);
+    public Process(boolean resume) {
+        this(new Builder(AnalysisConfig.from(Configuration.getInstance()).resume(resume).build()));
     }
 
-    /**
-     * Check if two method are the same
-     *
-     * @param refMethodName   refactoring method name
-     * @param smellMethodName smell method name
-     * @return a boolean value
-     */
-    private static boolean isSameMethod(String refMethodName, String smellMethodName) {
-        if (refMethodName == null) return false;
-
-        StringTokenizer st = new StringTokenizer(refMethodName, "(");
-        String method = st.nextToken();
-
-        StringTokenizer stSpace = new StringTokenizer(method, " ");
-        while (stSpace.hasMoreElements())
-            method = stSpace.nextToken();
-
-        return method.equals(smellMethodName);
+    private Process(Builder builder) {
+        config = builder.config;
+        workerFactory = builder.workerFactory;
+        designitePermits = builder.designitePermits;
+        sonarScanPermits = builder.sonarScanPermits;
+        metrics = builder.metrics != null ? builder.metrics : new Metrics();
+        resume = config.isResume();
+        repoDir = config.getRepoDir();
+        branchName = config.getRefactoringMinerBranchToAnalyze();
+        refactoringMinerDetectBetweenCommits = config.isRefactoringMinerDetectBetweenCommits();
+        commitsNewestFirst = !refactoringMinerDetectBetweenCommits;
+        refactoringMinerStartCommitId = config.getRefactoringMinerStartCommitId();
+        refactoringMinerEndCommitId = config.getRefactoringMinerEndCommitId();
+        refactoringMinerQueueCapacity = config.getRefactoringMinerQueueCapacity();
+        refactoringMinerParallelism = config.getRefactoringMinerParallelism();
+        refactoringMinerStoreEnabled = config.isRefactoringMinerStoreEnabled();
+        resultsDir = config.getResultsDir();
+        smellCache = builder.smellCache != null ? builder.smellCache
+                : config.isDesigniteCacheEnabled() ? new SmellCache(resultsDir) : null;
+        designiteIncremental = config.isDesigniteIncremental();
+        sonarQubeScanAhead = config.isSonarQubeScanAhead();
+        parallelism = config.getProcessParallelism();
+        pipelineEnabled = config.isPipelineEnabled();
+        pipelineSmellWorkers = config.getPipelineSmellWorkers();
+        pipelineDebtWorkers = config.getPipelineDebtWorkers();
+        pipelineJoinWorkers = config.getPipelineJoinWorkers();
+        pipelineMaxCommitsInFlight = config.getPipelineMaxCommitsInFlight();
+        pipelineStatsIntervalSeconds = config.getPipelineStatsIntervalSeconds();
+        metricsEnabled = config.isMetricsEnabled() && builder.metricsReporter;
+        metricsExportIntervalSeconds = config.getMetricsExportIntervalSeconds();
+        resultsQueueCapacity = config.getResultsQueueCapacity();
+        resultsFlushRows = config.getResultsFlushRows();
+        resultsFlushIntervalMillis = config.getResultsFlushIntervalMillis();
+        resultsFormat = config.getResultsFormat();
     }
 
     /**
-     * Given the package string and the class string, generate smell class filepath.
-     * If pkg contains packages with dot then replace with /.
-     *
-     * @param pkg       a String with packages
-     * @param className a String with class name
-     * @return a string contain the path of the class with packages
+     * @param config settings of the analysis
+     * @return a builder of the process analyzing the repository of the settings
      */
-    private static String generateSmellClassPath(String pkg, String className) {
-        pkg = pkg.replace(".", "/");
-        return pkg.contains(" ") ?
-                className.concat(".java")
-                : pkg.concat("/").concat(className).concat(".java");
+    public static Builder builder(AnalysisConfig config) {
+        return new Builder(config);
     }
 
     /**
@@ -111,163 +149,760 @@ public class Process {
      */
     public void start() throws Exception {
 
-        RefactoringMinerWorker refactoringMinerWorker =
-                new RefactoringMinerWorker(repoDir, resultsDir, writeRefactoringMinerOutputOnFile);
-        DesigniteWorker designiteWorker = new DesigniteWorker(designiteDir, repoDir, resultsDir);
-        SonarQubeWorker sonarQubeWorker = new SonarQubeWorker(sonarQubeServerBaseUrl, sonarQubeScannerBinDir,
-                repoDir, relativeSrcPath);
+        // timers and counters are always collected, the reporter writes them in results.dir
+        MetricsReporter metricsReporter = metricsEnabled ? new MetricsReporter(metrics, resultsDir,
+                metricsExportIntervalSeconds) : null;
+        try {
+            analyze();
+        } finally {
+            if (metricsReporter != null) {
+                metricsReporter.close();
+            }
+        }
+    }
+
+    private void analyze() throws Exception {
+        RefactoringStore refactoringStore = refactoringMinerStoreEnabled ? new RefactoringStore(resultsDir) : null;
+        RefactoringMinerWorker refactoringMinerWorker = workerFactory.newRefactoringMinerWorker(config, refactoringStore)
+                .withMetrics(metrics);
 
         logger.info("<Start process>");
 
-        ArrayList<Commit> commitList;
+        checkpointJournal = new CheckpointJournal(resultsDir, resultsFormat.getFilename(), resume);
+        // commits are marked as processed in the journal once their results are flushed on file
+        String resultsFile = Utils.preparePathOsBased(false, resultsDir, resultsFormat.getFilename());
+        // the journal keeps only committed rows, a new results file gets its header once the journal is open
+        if (checkpointJournal.isResultsFileEmpty()) {
+            resultsFormat.createFile(resultsFile);
+        }
+        boolean header = checkpointJournal.isResultsFileEmpty();
+        resultSink = new ResultSink<>(resultsFile, () -> resultsFormat.openWriter(resultsFile, header, metrics),
+                resultsQueueCapacity, resultsFlushRows, resultsFlushIntervalMillis, checkpointJournal::commit);
+
+        // committer of every analyzed commit is read with a single history walk
+        if (refactoringMinerDetectBetweenCommits) {
+            refactoringMinerWorker.preloadInformationCommits(refactoringMinerStartCommitId, refactoringMinerEndCommitId);
+        } else {
+            refactoringMinerWorker.preloadInformationCommits(null, branchName);
+        }
+
+        sonarHttpExecutor = SonarQubeWorker.newHttpExecutor(config.getSonarQubeHttpConcurrency());
+        sonarScanRegistry = new SonarScanRegistry(resultsDir, newSonarQubeWorker(repoDir));
+        String scanAheadDir = null;
+        if (sonarQubeScanAhead) {
+            // scans ahead run in their own worktree, while commits are checked out and analyzed by Designite
+            scanAheadDir = Utils.preparePathOsBased(false, resultsDir, WORKTREES_FOLDER, "sonar",
+                    Utils.getProjectNameFromRepoDir(repoDir));
+            refactoringMinerWorker.addWorktree(scanAheadDir);
+            String worktreeDir = scanAheadDir;
+            SonarQubeWorker scanAheadWorker = newSonarQubeWorker(worktreeDir);
+            sonarScanRegistry.enableScanAhead(hash -> {
+                refactoringMinerWorker.checkoutToCommit(hash, worktreeDir);
+                scanAheadWorker.executeScanning(hash);
+            });
+        }
+
+        // commits are analyzed while RefactoringMiner is still mining the following ones
+        CommitStream commitStream;
         if (refactoringMinerDetectBetweenCommits) {
-            commitList = refactoringMinerWorker.getRefactoringsForCommitsWithRange(
-                    refactoringMinerStartCommitId, refactoringMinerEndCommitId);
+            commitStream = refactoringMinerWorker.streamRefactoringsForCommitsWithRange(
+                    refactoringMinerStartCommitId, refactoringMinerEndCommitId,
+                    refactoringMinerQueueCapacity, refactoringMinerParallelism);
         } else {
-            commitList = refactoringMinerWorker.getRefactoringsForCommits(branchName);
+            commitStream = refactoringMinerWorker.streamRefactoringsForCommits(branchName,
+                    refactoringMinerQueueCapacity, refactoringMinerParallelism);
+        }
+
+        try (CommitStream commits = commitStream) {
+            if (pipelineEnabled) {
+                startPipeline(refactoringMinerWorker, commits);
+            } else if (parallelism > 1) {
+                startParallel(refactoringMinerWorker, commits);
+            } else {
+                startSequential(refactoringMinerWorker, commits);
+            }
+        } finally {
+            sonarScanRegistry.shutdown();
+            sonarHttpExecutor.shutdownNow();
+            if (scanAheadDir != null) {
+                refactoringMinerWorker.removeWorktree(scanAheadDir);
+            }
+            if (refactoringStore != null) {
+                logger.info("Refactoring store: " + refactoringStore.getHits() + " commits reused, "
+                        + refactoringStore.size() + " commits stored");
+                refactoringStore.close();
+            }
+            // results of the analyzed commits are kept also if the process fails, so it can be resumed
+            try {
+                resultSink.close();
+            } finally {
+                checkpointJournal.close();
+            }
+        }
+
+        if (smellCache != null) {
+            logger.info("Designite cache: " + smellCache.getHits() + " hits, " + smellCache.getMisses()
+                    + " misses (hit rate " + smellCache.getHitRatePercentage() + ")");
+        }
+        logFilterSelectivity();
+        logger.info("Process finished!");
+    }
+
+    private SonarQubeWorker newSonarQubeWorker(String workingDir) {
+        SonarQubeWorker sonarQubeWorker = workerFactory.newSonarQubeWorker(config, workingDir)
+                .withHttpExecutor(sonarHttpExecutor)
+                .withMetrics(metrics);
+        if (sonarScanPermits != null) {
+            sonarQubeWorker.withScanPermits(sonarScanPermits);
         }
+        return sonarQubeWorker;
+    }
+
+    private void logFilterSelectivity() {
+        long refactoringsFound = metrics.counter("filters.refactorings-found").get();
+        long refactoringsKept = metrics.counter("filters.refactorings-kept").get();
+        long smellsFound = metrics.counter("filters.smells-found").get();
+        long smellsKept = metrics.counter("filters.smells-kept").get();
+        logger.info("Filters: " + refactoringsKept + " of " + refactoringsFound + " refactorings kept ("
+                + percentage(refactoringsKept, refactoringsFound) + "), "
+                + metrics.counter("filters.commits-dropped").get() + " commits without kept refactorings dropped, "
+                + smellsKept + " of " + smellsFound + " smells read from Designite kept ("
+                + percentage(smellsKept, smellsFound) + ")");
+    }
+
+    private static String percentage(long part, long total) {
+        return total == 0 ? "-" : String.format("%.1f%%", part * 100.0 / total);
+    }
 
-        int commitNumber = 1, totalCommits = commitList.size();
+    /**
+     * Analyze commits one after another in the repository working tree
+     *
+     * @param refactoringMinerWorker worker used for checkouts
+     * @param commits                commits that contain refactorings, in the order they are mined
+     */
+    private void startSequential(RefactoringMinerWorker refactoringMinerWorker, CommitStream commits) throws Exception {
+        SlotPool slots = new SlotPool(refactoringMinerWorker);
+        slots.add(repoDir);
+        AnalysisSlot slot = slots.slots.get(repoDir);
+        int commitNumber = 1;
 
         // Loop on all commits that contains refactorings
-        for (Commit commit : commitList) {
+        Commit commit;
+        while ((commit = commits.next()) != null) {
+            if (isAlreadyProcessed(commit)) {
+                continue;
+            }
+            String previousCommitHashId = refactoringMinerWorker.getPreviousCommitHash(commit.getHash());
+            collectResults(commit,
+                    analyzeCommit(refactoringMinerWorker, slot, commit, previousCommitHashId, commitNumber++));
+        }
+        slots.logSnapshots("Working tree");
+    }
+
+    /**
+     * Analyze up to {@link #parallelism} commits at the same time, each one in its own git worktree.
+     * Results are collected in commit order, so the output is the same of the sequential process.
+     *
+     * @param refactoringMinerWorker worker used for checkouts and worktrees management
+     * @param commits                commits that contain refactorings, in the order they are mined
+     */
+    private void startParallel(RefactoringMinerWorker refactoringMinerWorker, CommitStream commits) throws Exception {
+        logger.info("Parallel analysis with " + parallelism + " worktrees");
+
+        SlotPool slots = addSlots(refactoringMinerWorker, "worker", parallelism);
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        Deque<Future<List<ProcessResult>>> pending = new ArrayDeque<>();
+        Deque<Commit> pendingCommits = new ArrayDeque<>();
+        int commitNumber = 1;
+        try {
+            Commit next;
+            while ((next = commits.next()) != null) {
+                if (isAlreadyProcessed(next)) {
+                    continue;
+                }
+                final Commit commit = next;
+                final int number = commitNumber++;
+                pending.add(executor.submit(() -> {
+                    String previousCommitHashId = refactoringMinerWorker.getPreviousCommitHash(commit.getHash());
+                    // a worktree that holds the previous commit or the commit avoids a checkout
+                    return slots.withSlot(slot -> analyzeCommit(refactoringMinerWorker, slot, commit,
+                            previousCommitHashId, number), previousCommitHashId, commit.getHash());
+                }));
+                pendingCommits.add(commit);
+                // limit commits analyzed ahead of the oldest one still running
+                while (pending.size() >= parallelism * 2) {
+                    collectResults(pendingCommits.poll(), getResults(pending.poll()));
+                }
+            }
+            while (!pending.isEmpty()) {
+                collectResults(pendingCommits.poll(), getResults(pending.poll()));
+            }
+        } finally {
+            // wait for running commits before removing their worktrees
+            executor.shutdownNow();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            slots.logSnapshots("Worktrees");
+            slots.removeWorktrees(refactoringMinerWorker);
+        }
+    }
+
+    /**
+     * Analyze commits with a pipeline of stages: Designite analyses, SonarQube scans and joins of different commits
+     * run at the same time, each stage with its own threads. Smell and debt stages work in their own worktrees.
+     * Results are collected in commit order, so the output is the same of the sequential process.
+     *
+     * @param refactoringMinerWorker worker used for checkouts and worktrees management
+     * @param commits                commits that contain refactorings, in the order they are mined
+     */
+    private void startPipeline(RefactoringMinerWorker refactoringMinerWorker, CommitStream commits) throws Exception {
+        logger.info("Pipeline analysis with " + pipelineSmellWorkers + " smell workers, " + pipelineDebtWorkers
+                + " debt workers, " + pipelineJoinWorkers + " join workers");
+
+        SlotPool smellSlots = addSlots(refactoringMinerWorker, "smells", pipelineSmellWorkers);
+        SlotPool debtSlots = addSlots(refactoringMinerWorker, "debt", pipelineDebtWorkers);
+
+        Pipeline pipeline = new Pipeline(pipelineStatsIntervalSeconds);
+        pipeline.addGauge("mined", commits::size);
+        Stage smellStage = pipeline.addStage("smells", pipelineSmellWorkers, pipelineMaxCommitsInFlight);
+        Stage debtStage = pipeline.addStage("debt", pipelineDebtWorkers, pipelineMaxCommitsInFlight);
+        Stage joinStage = pipeline.addStage("join", pipelineJoinWorkers, pipelineMaxCommitsInFlight);
+
+        Deque<CompletableFuture<List<ProcessResult>>> pending = new ArrayDeque<>();
+        Deque<Commit> pendingCommits = new ArrayDeque<>();
+        int commitNumber = 1;
+        try {
+            Commit next;
+            while ((next = commits.next()) != null) {
+                if (isAlreadyProcessed(next)) {
+                    continue;
+                }
+                final Commit commit = next;
+                final int number = commitNumber++;
+                pending.add(smellStage
+                        .submit(() -> {
+                            String previousCommitHashId = refactoringMinerWorker.getPreviousCommitHash(commit.getHash());
+                            // SonarQube scans are left to the debt stage
+                            return smellSlots.withSlot(slot -> analyzeSmells(refactoringMinerWorker, slot, commit,
+                                    previousCommitHashId, number, false), previousCommitHashId, commit.getHash());
+                        })
+                        .thenCompose(analysis -> {
+                            if (analysis == null) {
+                                return CompletableFuture.completedFuture(new ArrayList<>());
+                            }
+                            if (!analysis.needsDebt()) {
+                                // no results, debts are never requested
+                                return joinStage.submit(() -> joinResults(commit, analysis, () -> null));
+                            }
+                            return debtStage
+                                    .submit(() -> debtSlots.withSlot(slot -> getCommitDebt(slot, commit.getHash(),
+                                            analysis.previousCommitHash), analysis.previousCommitHash, commit.getHash()))
+                                    .thenCompose(debt -> joinStage.submit(() -> joinResults(commit, analysis, () -> debt)));
+                        }));
+                pendingCommits.add(commit);
+                // limit commits in the pipeline behind the oldest one not completed
+                while (pending.size() >= pipelineMaxCommitsInFlight) {
+                    collectResults(pendingCommits.poll(), getResults(pending.poll()));
+                }
+            }
+            while (!pending.isEmpty()) {
+                collectResults(pendingCommits.poll(), getResults(pending.poll()));
+            }
+        } finally {
+            // wait for running tasks before removing their worktrees
+            pipeline.close();
+            smellSlots.logSnapshots("Smell worktrees");
+            debtSlots.logSnapshots("Debt worktrees");
+            smellSlots.removeWorktrees(refactoringMinerWorker);
+            debtSlots.removeWorktrees(refactoringMinerWorker);
+        }
+    }
+
+    /**
+     * Create the worktrees of a group of slots
+     *
+     * @param refactoringMinerWorker worker used for worktrees management
+     * @param name                   name of the group, prefix of the worktree folders
+     * @param count                  number of slots
+     * @return the slots, to take and give back around each use
+     */
+    private SlotPool addSlots(RefactoringMinerWorker refactoringMinerWorker, String name, int count) {
+        String projectName = Utils.getProjectNameFromRepoDir(repoDir);
+        SlotPool slots = new SlotPool(refactoringMinerWorker);
+        for (int i = 0; i < count; i++) {
+            // worktree folder keeps the project name, so Designite and SonarQube name the project as in repoDir
+            String worktreeDir = Utils.preparePathOsBased(false, resultsDir, WORKTREES_FOLDER, name + i, projectName);
+            refactoringMinerWorker.addWorktree(worktreeDir);
+            slots.add(worktreeDir);
+        }
+        return slots;
+    }
+
+    private interface SlotTask<T> {
+        T run(AnalysisSlot slot) throws Exception;
+    }
 
-            logger.info("Commit " + commitNumber++ + "/" + totalCommits + ")");
+    private static List<ProcessResult> getResults(Future<List<ProcessResult>> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    private boolean isAlreadyProcessed(Commit commit) {
+        if (checkpointJournal.isCommitted(commit.getHash())) {
+            logger.info("Commit " + commit.getHash() + " already processed, skipped");
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Send the results of an analyzed commit to the csv writer
+     *
+     * @param commit  analyzed commit
+     * @param results results of the commit
+     */
+    private void collectResults(Commit commit, List<ProcessResult> results) throws IOException, InterruptedException {
+        logger.info("-----------------------------------------");
+        metrics.increment("process.commits");
+        metrics.add("process.results", results.size());
+        resultSink.submit(commit.getHash(), results);
+    }
+
+    /**
+     * Analyze a single commit in the working tree of the given slot: match code smells of the previous
+     * commit with the refactorings of the commit and associate class tech debts
+     *
+     * @param refactoringMinerWorker worker used for checkouts
+     * @param slot                   working tree and workers bound to it
+     * @param commit                 commit to analyze
+     * @param previousCommitHashId   previous commit (first parent), null if the commit has no parents
+     * @param commitNumber           position of the commit, for logging
+     * @return results of the commit
+     */
+    private List<ProcessResult> analyzeCommit(RefactoringMinerWorker refactoringMinerWorker, AnalysisSlot slot,
+                                              Commit commit, String previousCommitHashId, int commitNumber)
+            throws Exception {
+        try (Timer.Context ignored = metrics.time("process.commit")) {
+            SmellAnalysis analysis = analyzeSmells(refactoringMinerWorker, slot, commit, previousCommitHashId,
+                    commitNumber, true);
+            if (analysis == null) {
+                return new ArrayList<>();
+            }
+            // debts are read only if at least a result is found
+            return joinResults(commit, analysis,
+                    () -> getCommitDebt(slot, commit.getHash(), previousCommitHashId));
+        }
+    }
+
+    /**
+     * Detect with Designite the smells of a commit and of its previous commit, in the working tree of the given slot.
+     * Each snapshot is materialized once, in the order given by the mining direction: when commits are mined
+     * newest first the commit is analyzed first and the slot is left on the previous commit, that is the next
+     * commit to analyze; when they are mined oldest first the slot is left on the commit, the previous commit of
+     * the next one. Incremental analysis of the commit needs the smells of the previous commit, so it always
+     * comes second.
+     *
+     * @param refactoringMinerWorker worker used for checkouts
+     * @param slot                   working tree and workers bound to it
+     * @param commit                 commit to analyze
+     * @param previousCommitHashId   previous commit (first parent), null if the commit has no parents
+     * @param commitNumber           position of the commit, for logging
+     * @param scanDebt               scan the previous commit with SonarQube while it is checked out, if its debt
+     *                               is surely needed
+     * @return smells of the two commits, null if the commit has no previous commit or the previous commit has no smells
+     */
+    private SmellAnalysis analyzeSmells(RefactoringMinerWorker refactoringMinerWorker, AnalysisSlot slot,
+                                       Commit commit, String previousCommitHashId, int commitNumber,
+                                       boolean scanDebt) throws Exception {
+        try (Timer.Context ignored = metrics.time("process.smells")) {
+            logger.info("Commit " + commitNumber + " (" + commit.getHash() + ")");
+
+            DesigniteWorker designiteWorker = slot.designiteWorker;
+            SnapshotManager snapshots = slot.snapshots;
 
             String commitHashId = commit.getHash();
-            String previousCommitHashId = refactoringMinerWorker.checkoutPreviousCommit(commitHashId);
 
             // if present previous commit do analysis
-            if (previousCommitHashId != null) {
-
-                // Get smell list of previous commit
-                List<Smell> smellListPreviousCommit = designiteWorker.execute(previousCommitHashId);
-
-                // if designite return at least 1 smell do analysis
-                if (smellListPreviousCommit.size() > 0) {
-
-                    refactoringMinerWorker.checkoutToCommit(commitHashId);
-                    InfoCommit infoCommit = refactoringMinerWorker.getInformationCommit(commitHashId);
-
-                    // Get smell list of current commit
-                    List<Smell> smellListActualCommit = designiteWorker.execute(commitHashId);
-
-                    boolean sonarQubeScanningAlreadyDone = false;
-                    Integer tdDiff = null;
-                    Analysis actualAnalysis = null, previousAnalysis = null;
-                    ProcessResult pr;
-                    boolean refactoringsRemoveSmell;
-
-                    // for each previous smell considerate all refactoring of current commit
-                    for (Smell s0 : smellListPreviousCommit) {
-                        refactoringsRemoveSmell = false;
-
-                        String smellClassPath = generateSmellClassPath(s0.getPackageName(), s0.getClassName());
-                        for (Refactoring r : commit.getRefactoringList()) {
-
-                            // if smell and refactorings have to do between them (same class and, if exists, same method) then create entry regardless of true or false
-                            boolean isAEntry = r.leftSide() != null && r.leftSide().size() > 0
-                                    && isSamePathClass(Utils.getPackagesWithClassPath(r.leftSide().get(0).getFilePath()), smellClassPath)
-                                    && (s0.getMethodName() == null || isSameMethod(r.leftSide().get(0).getCodeElement(), s0.getMethodName()));
-
-                            if (isAEntry) {
-                                // Prepare new entry for results
-                                pr = new ProcessResult();
-                                pr.setCommitHash(commitHashId);
-                                pr.setClassName(s0.getClassName());
-                                pr.setMethodName(s0.getMethodName() == null ? "-" : s0.getMethodName());
-                                pr.setCommitterName(infoCommit.getAuthor());
-                                pr.setCommitterEmail(infoCommit.getEmail());
-                                pr.setSmellType(s0.getCodeSmell());
-                                pr.setRefactoringType(r.getRefactoringType().getDisplayName());
-
-                                // to avoid throwing multiple times SonarQubeScanner check
-                                // if already done for current and previous commit
-                                if (!sonarQubeScanningAlreadyDone) {
-                                    sonarQubeWorker.executeScanning(commitHashId);
-                                    refactoringMinerWorker.checkoutToCommit(previousCommitHashId);
-                                    sonarQubeWorker.executeScanning(previousCommitHashId);
-
-                                    // retrieve analysis from SonarQube Server
-                                    actualAnalysis = sonarQubeWorker.getAnalysisFor(commitHashId);
-                                    previousAnalysis = sonarQubeWorker.getAnalysisFor(previousCommitHashId);
-                                    sonarQubeScanningAlreadyDone = true;
-                                }
-
-                                tdDiff = sonarQubeWorker.extractTdFromComponent(previousAnalysis, smellClassPath)
-                                        - sonarQubeWorker.extractTdFromComponent(actualAnalysis, smellClassPath);
-
-                                pr.setTdDifference(tdDiff);
-                                pr.setTdClass(ProcessResult.getTdClassFor(tdDiff));
-
-                                // We suppose that it was been refactoring, because smell is not in the current list, so removed
-                                if (!smellListActualCommit.contains(s0)) {
-                                    // since the smell s0 has been removed from current refactoring (regardless other refactoring), it's useless to check for other cause after
-                                    refactoringsRemoveSmell = true;
-                                    pr.setSmellRemovedWithRefactoring(true);
-                                }
-
-                                // the smell is still present, despite there have been refactoring
-                                else
-                                    pr.setSmellRemovedWithRefactoring(false);
-
-                                // regards refactorings and not other causes
-                                pr.setSmellRemovedWithoutRefactoring(false);
-
-                                resultList.add(pr);
-                            }
-                        }
-                        // Check if the smell has not been removed due to at least one previous refactoring (refactoringRemoveSmell)
-                        // Smell may have been fixed for other causes and so if the smell is no longer in the current list, then there were other causes
-                        if (!refactoringsRemoveSmell && !smellListActualCommit.contains(s0)) {
-                            pr = new ProcessResult();
-                            pr.setCommitHash(commitHashId);
-                            pr.setClassName(s0.getClassName());
-                            pr.setMethodName(s0.getMethodName() == null ? "-" : s0.getMethodName());
-                            pr.setCommitterName(infoCommit.getAuthor());
-                            pr.setCommitterEmail(infoCommit.getEmail());
-                            pr.setSmellType(s0.getCodeSmell());
-                            pr.setRefactoringType("-");
-                            // obviously it was not refactoring
-                            pr.setSmellRemovedWithRefactoring(false);
-
-                            // to avoid throwing multiple times SonarQubeScanner check
-                            // if already done for current and previous commit
-                            if (!sonarQubeScanningAlreadyDone) {
-                                sonarQubeWorker.executeScanning(commitHashId);
-                                refactoringMinerWorker.checkoutToCommit(previousCommitHashId);
-                                sonarQubeWorker.executeScanning(previousCommitHashId);
-
-                                actualAnalysis = sonarQubeWorker.getAnalysisFor(commitHashId);
-                                previousAnalysis = sonarQubeWorker.getAnalysisFor(previousCommitHashId);
-                                sonarQubeScanningAlreadyDone = true;
-                            }
+            if (previousCommitHashId == null) {
+                logger.info("Previous Commit hash not found: " + commitHashId);
+                return null;
+            }
+
+            // SonarQube scans ahead, if enabled, overlap with Designite analysis
+            sonarScanRegistry.scheduleScan(previousCommitHashId);
+            sonarScanRegistry.scheduleScan(commitHashId);
+
+            String treeHash = refactoringMinerWorker.getTreeHash(commitHashId);
+            List<Smell> smellListActualCommit = null;
+            boolean commitFirst = !designiteIncremental && commitHashId.equals(
+                    SnapshotManager.materializationOrder(commitHashId, previousCommitHashId, commitsNewestFirst)[0]);
+            if (commitFirst) {
+                snapshots.materialize(slot.workingDir, commitHashId);
+                smellListActualCommit = designiteWorker.execute(commitHashId, treeHash);
+            }
+
+            // Get smell list of previous commit
+            snapshots.materialize(slot.workingDir, previousCommitHashId);
+            List<Smell> smellListPreviousCommit = designiteWorker.execute(previousCommitHashId,
+                    refactoringMinerWorker.getTreeHash(previousCommitHashId));
+
+            // if designite return at least 1 smell do analysis
+            if (smellListPreviousCommit.isEmpty()) {
+                return null;
+            }
+
+            RefactoringIndex refactoringIndex = new RefactoringIndex(commit.getRefactoringList());
+            if (smellListActualCommit == null) {
+                // a smell matched by a refactoring always gives a result, so the debt of the previous commit
+                // is read now instead of checking it out again later
+                if (scanDebt && hasMatchingRefactoring(smellListPreviousCommit, refactoringIndex)) {
+                    sonarScanRegistry.getDebtIndex(previousCommitHashId, scanIn(slot));
+                }
+
+                // Get smell list of current commit, analyzing only changed directories if incremental
+                snapshots.materialize(slot.workingDir, commitHashId);
+                smellListActualCommit = designiteIncremental ?
+                        designiteWorker.executeIncremental(commitHashId, treeHash, smellListPreviousCommit,
+                                refactoringMinerWorker.getChangedJavaDirectories(previousCommitHashId, commitHashId),
+                                (directories, targetDir) ->
+                                        refactoringMinerWorker.exportJavaDirectories(commitHashId, directories, targetDir))
+                        : designiteWorker.execute(commitHashId, treeHash);
+            }
+            InfoCommit infoCommit = refactoringMinerWorker.getInformationCommit(commitHashId);
+
+            return new SmellAnalysis(previousCommitHashId, smellListPreviousCommit, new SmellSet(smellListActualCommit),
+                    infoCommit, refactoringIndex);
+        }
+    }
+
+    private static boolean hasMatchingRefactoring(List<Smell> smellList, RefactoringIndex refactoringIndex) {
+        for (Smell s0 : smellList) {
+            if (!refactoringIndex.getMatching(s0).isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get class tech debts of a commit and of its previous commit, scanning with SonarQube Scanner in the working
+     * tree of the given slot only the snapshots not already scanned. Snapshots are scanned in the order given by
+     * the mining direction, so the slot is left on the snapshot the next commit needs.
+     *
+     * @param slot                 working tree and workers bound to it
+     * @param commitHashId         commit to scan
+     * @param previousCommitHashId previous commit to scan
+     * @return debts of the two commits
+     */
+    private CommitDebt getCommitDebt(AnalysisSlot slot, String commitHashId, String previousCommitHashId)
+            throws Exception {
+        try (Timer.Context ignored = metrics.time("process.debt")) {
+            SonarScanRegistry.Scan scan = scanIn(slot);
+            DebtIndex actualDebt = null, previousDebt = null;
+            for (String hash : SnapshotManager.materializationOrder(commitHashId, previousCommitHashId,
+                    commitsNewestFirst)) {
+                if (hash.equals(commitHashId)) {
+                    actualDebt = sonarScanRegistry.getDebtIndex(commitHashId, scan);
+                } else {
+                    previousDebt = sonarScanRegistry.getDebtIndex(previousCommitHashId, scan);
+                }
+            }
+            return new CommitDebt(previousDebt, actualDebt);
+        }
+    }
+
+    private static SonarScanRegistry.Scan scanIn(AnalysisSlot slot) {
+        return hash -> {
+            slot.snapshots.materialize(slot.workingDir, hash);
+            slot.sonarQubeWorker.executeScanning(hash);
+        };
+    }
+
+    /**
+     * Match the smells of the previous commit with the refactorings of the commit and associate class tech debts
+     *
+     * @param commit   analyzed commit
+     * @param analysis smells of the commit and of its previous commit
+     * @param debt     debts of the two commits, requested only if at least a result is found
+     * @return results of the commit
+     */
+    private List<ProcessResult> joinResults(Commit commit, SmellAnalysis analysis, DebtSupplier debt) throws Exception {
+        try (Timer.Context ignored = metrics.time("process.join")) {
+            List<ProcessResult> resultList = new ArrayList<>();
+            String commitHashId = commit.getHash();
+            metrics.add("process.smells-compared", analysis.previousSmells.size());
+            InfoCommit infoCommit = analysis.infoCommit;
+
+            CommitDebt commitDebt = null;
+            Integer tdDiff;
+            ProcessResult pr;
+            boolean refactoringsRemoveSmell, smellRemoved;
+
+            // for each previous smell considerate all refactoring of current commit
+            for (Smell s0 : analysis.previousSmells) {
+                refactoringsRemoveSmell = false;
+                smellRemoved = !analysis.actualSmells.contains(s0);
+
+                String smellClassPath = s0.getClassPath();
+
+                // if smell and refactorings have to do between them (same class and, if exists, same method) then create entry regardless of true or false
+                for (RefactoringRecord r : analysis.refactoringIndex.getMatching(s0)) {
+                    // Prepare new entry for results
+                    pr = new ProcessResult();
+                    pr.setCommitHash(commitHashId);
+                    pr.setClassName(s0.getClassName());
+                    pr.setMethodName(s0.getMethodName() == null ? "-" : s0.getMethodName());
+                    pr.setCommitterName(infoCommit.getAuthor());
+                    pr.setCommitterEmail(infoCommit.getEmail());
+                    pr.setSmellType(s0.getCodeSmell());
+                    pr.setRefactoringType(r.getRefactoringType().getDisplayName());
+
+                    // to avoid throwing multiple times SonarQubeScanner check
+                    // if already done for current and previous commit
+                    if (commitDebt == null) {
+                        commitDebt = debt.get();
+                    }
 
-                            tdDiff = sonarQubeWorker.extractTdFromComponent(previousAnalysis, smellClassPath)
-                                    - sonarQubeWorker.extractTdFromComponent(actualAnalysis, smellClassPath);
+                    tdDiff = commitDebt.previous.get(smellClassPath) - commitDebt.actual.get(smellClassPath);
+
+                    pr.setTdDifference(tdDiff);
+                    pr.setTdClass(ProcessResult.getTdClassFor(tdDiff));
+
+                    // We suppose that it was been refactoring, because smell is not in the current list, so removed
+                    if (smellRemoved) {
+                        // since the smell s0 has been removed from current refactoring (regardless other refactoring), it's useless to check for other cause after
+                        refactoringsRemoveSmell = true;
+                        pr.setSmellRemovedWithRefactoring(true);
+                    }
 
-                            pr.setTdDifference(tdDiff);
-                            pr.setTdClass(ProcessResult.getTdClassFor(tdDiff));
+                    // the smell is still present, despite there have been refactoring
+                    else
+                        pr.setSmellRemovedWithRefactoring(false);
 
-                            pr.setSmellRemovedWithoutRefactoring((true));
+                    // regards refactorings and not other causes
+                    pr.setSmellRemovedWithoutRefactoring(false);
 
-                            resultList.add(pr);
-                        }
+                    resultList.add(pr);
+                }
+                // Check if the smell has not been removed due to at least one previous refactoring (refactoringRemoveSmell)
+                // Smell may have been fixed for other causes and so if the smell is no longer in the current list, then there were other causes
+                if (!refactoringsRemoveSmell && smellRemoved) {
+                    pr = new ProcessResult();
+                    pr.setCommitHash(commitHashId);
+                    pr.setClassName(s0.getClassName());
+                    pr.setMethodName(s0.getMethodName() == null ? "-" : s0.getMethodName());
+                    pr.setCommitterName(infoCommit.getAuthor());
+                    pr.setCommitterEmail(infoCommit.getEmail());
+                    pr.setSmellType(s0.getCodeSmell());
+                    pr.setRefactoringType("-");
+                    // obviously it was not refactoring
+                    pr.setSmellRemovedWithRefactoring(false);
+
+                    // to avoid throwing multiple times SonarQubeScanner check
+                    // if already done for current and previous commit
+                    if (commitDebt == null) {
+                        commitDebt = debt.get();
                     }
+
+                    tdDiff = commitDebt.previous.get(smellClassPath) - commitDebt.actual.get(smellClassPath);
+
+                    pr.setTdDifference(tdDiff);
+                    pr.setTdClass(ProcessResult.getTdClassFor(tdDiff));
+
+                    pr.setSmellRemovedWithoutRefactoring((true));
+
+                    resultList.add(pr);
+                }
+            }
+            return resultList;
+        }
+    }
+
+    /**
+     * Smells detected for a commit and its previous commit, waiting to be joined with refactorings and debts
+     */
+    private static class SmellAnalysis {
+        private final String previousCommitHash;
+        private final List<Smell> previousSmells;
+        private final SmellSet actualSmells;
+        private final InfoCommit infoCommit;
+        private final RefactoringIndex refactoringIndex;
+
+        private SmellAnalysis(String previousCommitHash, List<Smell> previousSmells, SmellSet actualSmells,
+                              InfoCommit infoCommit, RefactoringIndex refactoringIndex) {
+            this.previousCommitHash = previousCommitHash;
+            this.previousSmells = previousSmells;
+            this.actualSmells = actualSmells;
+            this.infoCommit = infoCommit;
+            this.refactoringIndex = refactoringIndex;
+        }
+
+        /**
+         * @return true if the join produces at least a result, so debts of the two commits are needed
+         */
+        private boolean needsDebt() {
+            for (Smell s0 : previousSmells) {
+                if (!actualSmells.contains(s0) || !refactoringIndex.getMatching(s0).isEmpty()) {
+                    return true;
                 }
             }
-            logger.info("-----------------------------------------");
+            return false;
+        }
+    }
+
+    /**
+     * Class tech debts of a commit and of its previous commit
+     */
+    private static class CommitDebt {
+        private final DebtIndex previous;
+        private final DebtIndex actual;
+
+        private CommitDebt(DebtIndex previous, DebtIndex actual) {
+            this.previous = previous;
+            this.actual = actual;
+        }
+    }
+
+    private interface DebtSupplier {
+        CommitDebt get() throws Exception;
+    }
 
-            // Save result list in csv file each 5 commit analyzed
-            if (commitNumber % 5 == 0) {
-                logger.info("Updating " + RESULTS_PROCESS_FILENAME);
-                CSVService.writeCsvFileWithStrategy(Utils.preparePathOsBased(false, resultsDir, RESULTS_PROCESS_FILENAME), resultList, ProcessResult.class, false, true);
-                resultList.clear();
+    /**
+     * Working tree where a commit is analyzed, with the workers bound to it
+     */
+    private class AnalysisSlot {
+        private final String workingDir;
+        private final SnapshotManager snapshots;
+        private final DesigniteWorker designiteWorker;
+        private final SonarQubeWorker sonarQubeWorker;
+
+        private AnalysisSlot(String workingDir, SnapshotManager snapshots) {
+            this.workingDir = workingDir;
+            this.snapshots = snapshots;
+            this.designiteWorker = workerFactory.newDesigniteWorker(config, workingDir, smellCache)
+                    .withMetrics(metrics);
+            if (designitePermits != null) {
+                designiteWorker.withProcessPermits(designitePermits);
             }
+            this.sonarQubeWorker = newSonarQubeWorker(workingDir);
+        }
+    }
+
+    /**
+     * Group of slots whose working trees are lent by a snapshot manager, so a commit is analyzed preferably in the
+     * slot that already holds its snapshots
+     */
+    private class SlotPool {
+        private final SnapshotManager snapshots;
+        private final Map<String, AnalysisSlot> slots = new LinkedHashMap<>();
+
+        private SlotPool(RefactoringMinerWorker refactoringMinerWorker) {
+            this.snapshots = new SnapshotManager(refactoringMinerWorker);
+        }
+
+        // slots are all added before the first use
+        private void add(String workingDir) {
+            slots.put(workingDir, new AnalysisSlot(workingDir, snapshots));
+            snapshots.addWorkingTree(workingDir);
+        }
+
+        private <T> T withSlot(SlotTask<T> task, String... wantedCommits) throws Exception {
+            String workingDir = snapshots.acquire(wantedCommits);
+            try {
+                return task.run(slots.get(workingDir));
+            } finally {
+                snapshots.release(workingDir);
+            }
+        }
+
+        private void logSnapshots(String name) {
+            logger.info(name + ": " + snapshots.getCheckouts() + " checkouts, "
+                    + snapshots.getReuses() + " snapshots reused");
+        }
+
+        private void removeWorktrees(RefactoringMinerWorker refactoringMinerWorker) {
+            for (String workingDir : slots.keySet()) {
+                refactoringMinerWorker.removeWorktree(workingDir);
+            }
+        }
+    }
+
+    /**
+     * Builder of a process: settings, and optionally the workers and caches kept by the application running it
+     */
+    public static class Builder {
+        private final AnalysisConfig config;
+        private WorkerFactory workerFactory = WorkerFactory.DEFAULT;
+        private SmellCache smellCache;
+        private Semaphore designitePermits;
+        private Semaphore sonarScanPermits;
+        private Metrics metrics;
+        private boolean metricsReporter = true;
+
+        private Builder(AnalysisConfig config) {
+            this.config = config;
+        }
+
+        /**
+         * @param workerFactory creates the workers of the process, new workers for every analysis by default
+         * @return this builder
+         */
+        public Builder withWorkerFactory(WorkerFactory workerFactory) {
+            this.workerFactory = workerFactory;
+            return this;
+        }
+
+        /**
+         * @param smellCache cache of the smells shared with other processes, by default a cache in results dir
+         *                   if enabled by the settings
+         * @return this builder
+         */
+        public Builder withSmellCache(SmellCache smellCache) {
+            this.smellCache = smellCache;
+            return this;
+        }
+
+        /**
+         * Limit Designite analyses and Sonar Scanner runs of the process together with other processes
+         *
+         * @param designitePermits permits held by each Designite analysis
+         * @param sonarScanPermits permits held by each run of Sonar Scanner
+         * @return this builder
+         */
+        public Builder withSharedPermits(Semaphore designitePermits, Semaphore sonarScanPermits) {
+            this.designitePermits = designitePermits;
+            this.sonarScanPermits = sonarScanPermits;
+            return this;
+        }
+
+        /**
+         * @param metrics registry of the timers and counters of the process, by default its own registry
+         * @return this builder
+         */
+        public Builder withMetrics(Metrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Metrics are still collected, but written by the caller (e.g. once for a batch of processes)
+         *
+         * @return this builder
+         */
+        public Builder withoutMetricsReporter() {
+            this.metricsReporter = false;
+            return this;
+        }
+
+        /**
+         * @return the process
+         */
+        public Process build() {
+            return new Process(this);
         }
-        logger.info("Updating " + RESULTS_PROCESS_FILENAME);
-        CSVService.writeCsvFileWithStrategy(Utils.preparePathOsBased(false, resultsDir, RESULTS_PROCESS_FILENAME), resultList, ProcessResult.class, false, true);
-        logger.info("Process finished!");
     }
 
 }
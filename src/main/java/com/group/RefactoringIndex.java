@@ -0,0 +1,68 @@
+package com.group;
+
+import com.group.csv.Smell;
+import com.group.pojo.RefactoringRecord;
+
+import java.util.*;
+
+/**
+ * Refactorings of a commit bucketed by the class path (and method) of their left side.
+ * Class paths and method names are normalized once per refactoring, so matching a smell with the
+ * refactorings of its class is a hash lookup instead of a scan of all the refactorings.
+ */
+public class RefactoringIndex {
+
+    private final Map<String, List<RefactoringRecord>> refactoringsByClassPath = new HashMap<>();
+    private final Map<String, List<RefactoringRecord>> refactoringsByMethod = new HashMap<>();
+
+    public RefactoringIndex(List<RefactoringRecord> refactorings) {
+        for (RefactoringRecord r : refactorings) {
+            if (r.getFilePath() == null)
+                continue;
+
+            String classPath = Utils.getPackagesWithClassPath(r.getFilePath());
+            refactoringsByClassPath.computeIfAbsent(classPath, k -> new ArrayList<>()).add(r);
+
+            String methodName = getMethodName(r.getCodeElement());
+            if (methodName != null)
+                refactoringsByMethod.computeIfAbsent(methodKey(classPath, methodName), k -> new ArrayList<>()).add(r);
+        }
+    }
+
+    /**
+     * Get the refactorings related to a smell: same class and, if the smell has one, same method
+     *
+     * @param smell a smell of the previous commit
+     * @return matching refactorings, in the order of the commit refactoring list
+     */
+    public List<RefactoringRecord> getMatching(Smell smell) {
+        List<RefactoringRecord> refactorings = smell.getMethodName() == null ?
+                refactoringsByClassPath.get(smell.getClassPath())
+                : refactoringsByMethod.get(methodKey(smell.getClassPath(), smell.getMethodName()));
+        return refactorings != null ? refactorings : Collections.emptyList();
+    }
+
+    /**
+     * Extract the method name from a refactoring code element, e.g. "public foo(int) : void" -> "foo"
+     *
+     * @param codeElement refactoring code element
+     * @return the method name, null if there is no code element
+     */
+    public static String getMethodName(String codeElement) {
+        if (codeElement == null) return null;
+
+        StringTokenizer st = new StringTokenizer(codeElement, "(");
+        if (!st.hasMoreTokens()) return null;
+        String method = st.nextToken();
+
+        StringTokenizer stSpace = new StringTokenizer(method, " ");
+        while (stSpace.hasMoreElements())
+            method = stSpace.nextToken();
+
+        return method;
+    }
+
+    private static String methodKey(String classPath, String methodName) {
+        return classPath + '#' + methodName;
+    }
+}
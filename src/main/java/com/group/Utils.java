@@ -1,17 +1,26 @@
 package com.group;
 
+import org.apache.commons.lang3.StringUtils;
 import org.refactoringminer.api.RefactoringType;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.StringTokenizer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 public class Utils {
 
-    public static final boolean isWindowsSystem = Configuration.getInstance().isWindowsSystem();
-    public static final String currentShell = Configuration.getInstance().getCurrentShell();
+    // detected from the running JVM, so utilities can be used without loading the configuration
+    public static final boolean isWindowsSystem =
+            StringUtils.containsIgnoreCase(System.getProperty("os.name"), "windows");
+    public static final String currentShell = isWindowsSystem ? "cmd" : "bash";
 
     public static final Map<String, Boolean> allowedSmell = new HashMap<String, Boolean>() {{
         put("Long Method", true);
@@ -77,4 +86,38 @@ public class Utils {
         return filepath;
     }
 
+    /**
+     * Given the package string and the class string, generate smell class filepath.
+     * If pkg contains packages with dot then replace with /.
+     *
+     * @param pkg       a String with packages
+     * @param className a String with class name
+     * @return a string contain the path of the class with packages
+     */
+    public static String generateSmellClassPath(String pkg, String className) {
+        pkg = pkg.replace(".", "/");
+        return pkg.contains(" ") ?
+                className.concat(".java")
+                : pkg.concat("/").concat(className).concat(".java");
+    }
+
+    /**
+     * Recursively delete a directory with all its content, if exists
+     *
+     * @param directory directory to delete
+     * @return true if the directory no longer exists
+     */
+    public static boolean deleteDirectory(File directory) {
+        if (!directory.exists())
+            return true;
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            paths.sorted(Comparator.reverseOrder())
+                    .map(Path::toFile)
+                    .forEach(File::delete);
+        } catch (IOException e) {
+            return false;
+        }
+        return !directory.exists();
+    }
+
 }
@@ -0,0 +1,61 @@
+package com.group;
+
+import com.group.cache.RefactoringStore;
+import com.group.cache.SmellCache;
+import com.group.worker.DesigniteWorker;
+import com.group.worker.RefactoringMinerWorker;
+import com.group.worker.SonarQubeWorker;
+
+/**
+ * Creates the workers of an analysis. The default methods create new workers from the settings; an application
+ * running many analyses can override them, e.g. to return its own worker implementations or workers kept
+ * from a previous analysis of the same repository.
+ */
+public interface WorkerFactory {
+
+    WorkerFactory DEFAULT = new WorkerFactory() {
+    };
+
+    /**
+     * @param config           settings of the analysis
+     * @param refactoringStore store of the already mined commits, null to mine all the commits
+     * @return the worker mining the repository, with the refactoring filter of the settings
+     * @throws Exception if the repository cannot be opened
+     */
+    default RefactoringMinerWorker newRefactoringMinerWorker(AnalysisConfig config, RefactoringStore refactoringStore)
+            throws Exception {
+        RefactoringMinerWorker refactoringMinerWorker = new RefactoringMinerWorker(config.getRepoDir(),
+                config.getResultsDir(), config.isWriteRefactoringMinerOutputOnFile(), refactoringStore);
+        if (!config.getFilterRefactoringTypes().isEmpty()) {
+            // commits without refactorings of these types are dropped while mining
+            refactoringMinerWorker.withRefactoringFilter(config.getFilterRefactoringTypes()::contains);
+        }
+        return refactoringMinerWorker;
+    }
+
+    /**
+     * @param config     settings of the analysis
+     * @param workingDir working tree analyzed by the worker
+     * @param smellCache cache of the smells by tree hash, null to always run Designite
+     * @return the worker detecting the smells of the working tree
+     */
+    default DesigniteWorker newDesigniteWorker(AnalysisConfig config, String workingDir, SmellCache smellCache) {
+        DesigniteWorker designiteWorker = new DesigniteWorker(config.getDesigniteDir(), workingDir,
+                config.getResultsDir(), smellCache, config.getDesigniteOutputDir(), config.isDesigniteKeepOutput(),
+                config.isDesigniteWriteFilteredSmells()).withMode(config.getDesigniteMode());
+        if (!config.getFilterSmellTypes().isEmpty()) {
+            designiteWorker.withSmellFilter(config.getFilterSmellTypes());
+        }
+        return designiteWorker;
+    }
+
+    /**
+     * @param config     settings of the analysis
+     * @param workingDir working tree scanned by the worker
+     * @return the worker scanning the working tree and reading its technical debt
+     */
+    default SonarQubeWorker newSonarQubeWorker(AnalysisConfig config, String workingDir) {
+        return new SonarQubeWorker(config.getSonarQubeServerBaseUrl(), config.getSonarQubeScannerBinDir(),
+                workingDir, config.getRelativeSrcPath(), config.getSonarQubeHttpConcurrency());
+    }
+}
@@ -0,0 +1,207 @@
+package com.group.cache;
+
+import com.group.Utils;
+import com.group.pojo.RefactoringRecord;
+import org.apache.log4j.Logger;
+import org.refactoringminer.api.RefactoringType;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persistent store of the refactorings detected by RefactoringMiner, keyed by commit hash.
+ * Commits already in the store are not mined again, also the ones without refactorings.
+ * Entries are appended to a single binary file and indexed by offset when the store is opened,
+ * an incomplete entry left by an interrupted run is truncated.
+ */
+public class RefactoringStore implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(RefactoringStore.class);
+
+    private static final String STORE_FILENAME = "refactoringStore.bin";
+    private static final int MAGIC = 0x52465354;
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = 8;
+
+    private final RandomAccessFile file;
+    private final Map<String, Long> offsets = new HashMap<>();
+    private int hits;
+    private boolean closed;
+
+    public RefactoringStore(String resultsDir) throws IOException {
+        File storeFile = new File(Utils.preparePathOsBased(false, resultsDir, STORE_FILENAME));
+        storeFile.getParentFile().mkdirs();
+        file = new RandomAccessFile(storeFile, "rw");
+        load();
+        logger.info("Refactoring store loaded with " + offsets.size() + " commits");
+    }
+
+    /**
+     * @param commitHash hash of the commit
+     * @return true if the commit was already mined
+     */
+    public synchronized boolean contains(String commitHash) {
+        return offsets.containsKey(commitHash);
+    }
+
+    /**
+     * Get the refactorings of a mined commit
+     *
+     * @param commitHash hash of the commit
+     * @return the refactorings of the commit (empty if it has none), null if the commit was not mined
+     * @throws IOException if the store cannot be read
+     */
+    public synchronized List<RefactoringRecord> get(String commitHash) throws IOException {
+        Long offset = offsets.get(commitHash);
+        if (offset == null || closed) {
+            return null;
+        }
+        file.seek(offset);
+        byte[] entry = new byte[file.readInt()];
+        file.readFully(entry);
+        hits++;
+        return decode(entry).refactoringList;
+    }
+
+    /**
+     * Append the refactorings of a mined commit, a commit already in the store is not written again.
+     * Commits mined after the store is closed are not saved.
+     *
+     * @param commitHash      hash of the commit
+     * @param refactoringList refactorings of the commit, empty if it has none
+     * @throws IOException if the store cannot be written
+     */
+    public synchronized void put(String commitHash, List<RefactoringRecord> refactoringList) throws IOException {
+        if (closed || offsets.containsKey(commitHash)) {
+            return;
+        }
+        byte[] entry = encode(commitHash, refactoringList);
+        long offset = file.length();
+        file.seek(offset);
+        file.writeInt(entry.length);
+        file.write(entry);
+        offsets.put(commitHash, offset);
+    }
+
+    public synchronized int size() {
+        return offsets.size();
+    }
+
+    /**
+     * @return number of commits read from the store instead of mined
+     */
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        file.close();
+    }
+
+    private void load() throws IOException {
+        long length = file.length();
+        if (length < HEADER_LENGTH) {
+            file.setLength(0);
+            file.writeInt(MAGIC);
+            file.writeInt(VERSION);
+            return;
+        }
+        file.seek(0);
+        if (file.readInt() != MAGIC || file.readInt() != VERSION) {
+            throw new IOException("Unknown refactoring store format, delete it to mine the history again");
+        }
+        long validLength = HEADER_LENGTH;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file.getFD()) {
+                    @Override
+                    public void close() {
+                        // the descriptor is owned by the random access file
+                    }
+                }))) {
+            while (validLength + 4 <= length) {
+                int entryLength = in.readInt();
+                if (entryLength < 0 || validLength + 4 + entryLength > length) {
+                    break;
+                }
+                byte[] entry = new byte[entryLength];
+                in.readFully(entry);
+                offsets.put(decode(entry).commitHash, validLength);
+                validLength += 4 + entryLength;
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            logger.warn("Invalid entry in refactoring store at offset " + validLength, e);
+        }
+        if (validLength < length) {
+            logger.warn("Truncating incomplete tail of refactoring store (" + (length - validLength) + " bytes)");
+            file.setLength(validLength);
+        }
+    }
+
+    private static byte[] encode(String commitHash, List<RefactoringRecord> refactoringList) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(commitHash);
+            out.writeInt(refactoringList.size());
+            for (RefactoringRecord r : refactoringList) {
+                out.writeUTF(r.getRefactoringType().name());
+                writeString(out, r.getFilePath());
+                writeString(out, r.getCodeElement());
+                writeString(out, r.getDescription());
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Entry decode(byte[] entry) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(entry));
+        String commitHash = in.readUTF();
+        int size = in.readInt();
+        if (size < 0) {
+            throw new IOException("Invalid refactoring count " + size);
+        }
+        List<RefactoringRecord> refactoringList = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            RefactoringType refactoringType = RefactoringType.valueOf(in.readUTF());
+            refactoringList.add(new RefactoringRecord(refactoringType, readString(in), readString(in), readString(in)));
+        }
+        return new Entry(commitHash, size == 0 ? Collections.emptyList() : refactoringList);
+    }
+
+    // descriptions may exceed the 64KB limit of writeUTF
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static class Entry {
+        private final String commitHash;
+        private final List<RefactoringRecord> refactoringList;
+
+        private Entry(String commitHash, List<RefactoringRecord> refactoringList) {
+            this.commitHash = commitHash;
+            this.refactoringList = refactoringList;
+        }
+    }
+}
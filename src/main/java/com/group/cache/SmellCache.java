@@ -0,0 +1,99 @@
+package com.group.cache;
+
+import com.group.Utils;
+import com.group.csv.Smell;
+import org.apache.log4j.Logger;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Persistent cache of the filtered smell lists produced by Designite, keyed by git tree hash.
+ * Two commits with the same tree have the same sources, so Designite has to run only once for them.
+ * Cache entries survive restarts and are written atomically, so they can be shared by parallel workers.
+ * Entries are stored as compact smell snapshots.
+ */
+public class SmellCache {
+
+    private static final Logger logger = Logger.getLogger(SmellCache.class);
+
+    private static final String CACHE_FOLDER = "designiteCache";
+    private static final String CACHE_EXTENSION = ".smells";
+
+    private final File cacheDir;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    public SmellCache(String resultsDir) {
+        this.cacheDir = new File(Utils.preparePathOsBased(false, resultsDir, CACHE_FOLDER));
+        this.cacheDir.mkdirs();
+    }
+
+    /**
+     * Get the smell list of a tree, if already analyzed
+     *
+     * @param treeHash hash of the git tree
+     * @return the cached smell list, null on miss
+     */
+    public List<Smell> get(String treeHash) {
+        File entry = getEntryFile(treeHash);
+        if (entry.exists()) {
+            try (InputStream in = new BufferedInputStream(new FileInputStream(entry))) {
+                List<Smell> smellList = SmellSnapshot.read(in);
+                hits.incrementAndGet();
+                logger.info("Designite cache hit for tree " + treeHash + " (hit rate " + getHitRatePercentage() + ")");
+                return smellList;
+            } catch (IOException e) {
+                logger.warn("Unreadable Designite cache entry " + entry + ", it will be replaced", e);
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Store the smell list of a tree
+     *
+     * @param treeHash  hash of the git tree
+     * @param smellList filtered smell list of the tree
+     */
+    public void put(String treeHash, List<Smell> smellList) {
+        File entry = getEntryFile(treeHash);
+        try {
+            File tmp = File.createTempFile(treeHash, ".tmp", cacheDir);
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp))) {
+                SmellSnapshot.write(smellList, out);
+            }
+            Files.move(tmp.toPath(), entry.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.error(e);
+        }
+    }
+
+    public int getHits() {
+        return hits.get();
+    }
+
+    public int getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return hits on total lookups, 0 if there was no lookup
+     */
+    public double getHitRate() {
+        int lookups = hits.get() + misses.get();
+        return lookups == 0 ? 0 : (double) hits.get() / lookups;
+    }
+
+    public String getHitRatePercentage() {
+        return String.format("%.1f%%", getHitRate() * 100);
+    }
+
+    private File getEntryFile(String treeHash) {
+        return new File(cacheDir, treeHash + CACHE_EXTENSION);
+    }
+}
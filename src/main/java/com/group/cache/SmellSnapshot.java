@@ -0,0 +1,126 @@
+package com.group.cache;
+
+import com.group.csv.Smell;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary format of a smell list. Strings are written once in a table and smells refer to them
+ * by index, since smells of a commit repeat few project, package, class and smell names.
+ */
+public final class SmellSnapshot {
+
+    private static final int MAGIC = 0x534d4c53;
+    private static final int VERSION = 1;
+
+    private SmellSnapshot() {
+    }
+
+    /**
+     * @param smellList smells to write
+     * @param output    destination of the snapshot, not closed
+     * @throws IOException if the snapshot cannot be written
+     */
+    public static void write(List<Smell> smellList, OutputStream output) throws IOException {
+        Map<String, Integer> indexes = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        int[] references = new int[smellList.size() * 5];
+        int r = 0;
+        for (Smell s : smellList) {
+            references[r++] = index(s.getProjectName(), indexes, strings);
+            references[r++] = index(s.getPackageName(), indexes, strings);
+            references[r++] = index(s.getClassName(), indexes, strings);
+            references[r++] = index(s.getMethodName(), indexes, strings);
+            references[r++] = index(s.getCodeSmell(), indexes, strings);
+        }
+
+        DataOutputStream out = new DataOutputStream(output);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        writeVarInt(out, strings.size());
+        for (String string : strings) {
+            out.writeUTF(string);
+        }
+        writeVarInt(out, smellList.size());
+        for (int reference : references) {
+            writeVarInt(out, reference);
+        }
+        out.flush();
+    }
+
+    /**
+     * @param input snapshot written by {@link #write(List, OutputStream)}, not closed
+     * @return the smell list of the snapshot
+     * @throws IOException if the snapshot cannot be read or is not valid
+     */
+    public static List<Smell> read(InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(input);
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Unknown smell snapshot format");
+        }
+        String[] strings = new String[readVarInt(in) + 1];
+        for (int i = 1; i < strings.length; i++) {
+            strings[i] = in.readUTF();
+        }
+        int size = readVarInt(in);
+        List<Smell> smellList = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            smellList.add(new Smell(
+                    string(strings, readVarInt(in)),
+                    string(strings, readVarInt(in)),
+                    string(strings, readVarInt(in)),
+                    string(strings, readVarInt(in)),
+                    string(strings, readVarInt(in))));
+        }
+        return smellList;
+    }
+
+    // 0 is null, strings are indexed from 1
+    private static int index(String value, Map<String, Integer> indexes, List<String> strings) {
+        if (value == null) {
+            return 0;
+        }
+        Integer index = indexes.get(value);
+        if (index == null) {
+            strings.add(value);
+            index = strings.size();
+            indexes.put(value, index);
+        }
+        return index;
+    }
+
+    private static String string(String[] strings, int index) throws IOException {
+        if (index >= strings.length) {
+            throw new IOException("Invalid string index " + index);
+        }
+        return strings[index];
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid variable length integer");
+    }
+}
@@ -0,0 +1,159 @@
+package com.group.checkpoint;
+
+import com.group.Utils;
+import org.apache.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Journal of the commits whose results are durably written on the results file.
+ * Each line holds a commit hash and the length of the results file once its rows were written,
+ * so on resume the file is truncated to the last committed length (rows of a batch interrupted
+ * while writing are dropped) and the journaled commits are not analyzed again.
+ */
+public class CheckpointJournal implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(CheckpointJournal.class);
+
+    private static final String JOURNAL_EXTENSION = ".journal";
+
+    private final Path resultsFile;
+    private final FileChannel journal;
+    private final Set<String> committedCommits = new HashSet<>();
+    private long committedLength;
+
+    /**
+     * @param resultsDir      directory of the results
+     * @param resultsFilename results file whose rows are journaled
+     * @param resume          if true keep the journal of the previous run, otherwise start from an empty results file
+     * @throws IOException if the journal or the results file cannot be read or written
+     */
+    public CheckpointJournal(String resultsDir, String resultsFilename, boolean resume) throws IOException {
+        resultsFile = Paths.get(Utils.preparePathOsBased(false, resultsDir, resultsFilename));
+        Path journalFile = Paths.get(Utils.preparePathOsBased(false, resultsDir, resultsFilename + JOURNAL_EXTENSION));
+        Files.createDirectories(journalFile.getParent());
+        long journalLength = resume ? load(journalFile) : 0;
+        truncateResults();
+        journal = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        journal.truncate(journalLength);
+        journal.position(journalLength);
+        if (resume) {
+            logger.info("Resuming with " + committedCommits.size() + " commits already processed");
+        }
+    }
+
+    /**
+     * @param commitHash hash of the commit
+     * @return true if the results of the commit are already in the results file
+     */
+    public synchronized boolean isCommitted(String commitHash) {
+        return committedCommits.contains(commitHash);
+    }
+
+    public synchronized int size() {
+        return committedCommits.size();
+    }
+
+    /**
+     * @return true if no row was committed on the results file yet
+     */
+    public synchronized boolean isResultsFileEmpty() throws IOException {
+        return !Files.exists(resultsFile) || Files.size(resultsFile) == 0;
+    }
+
+    /**
+     * Mark commits as processed, to be called once their rows are appended to the results file.
+     * Results file and journal are synced on disk before returning.
+     *
+     * @param commitHashes commits whose rows were appended
+     * @throws IOException if the journal cannot be written
+     */
+    public synchronized void commit(Collection<String> commitHashes) throws IOException {
+        if (commitHashes.isEmpty()) {
+            return;
+        }
+        long resultsLength = 0;
+        if (Files.exists(resultsFile)) {
+            try (FileChannel results = FileChannel.open(resultsFile, StandardOpenOption.WRITE)) {
+                results.force(true);
+                resultsLength = results.size();
+            }
+        }
+        StringBuilder lines = new StringBuilder();
+        for (String commitHash : commitHashes) {
+            lines.append(commitHash).append('\t').append(resultsLength).append('\n');
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            journal.write(buffer);
+        }
+        journal.force(false);
+        committedCommits.addAll(commitHashes);
+        committedLength = resultsLength;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        journal.close();
+    }
+
+    /**
+     * Read the committed commits of a previous run
+     *
+     * @param journalFile journal to read
+     * @return length of the valid lines of the journal, a line interrupted while writing is dropped
+     */
+    private long load(Path journalFile) throws IOException {
+        if (!Files.exists(journalFile)) {
+            logger.warn("No journal found in " + journalFile + ", starting from an empty results file");
+            return 0;
+        }
+        byte[] content = Files.readAllBytes(journalFile);
+        int lineStart = 0;
+        for (int i = 0; i < content.length; i++) {
+            if (content[i] != '\n') {
+                continue;
+            }
+            String[] fields = new String(content, lineStart, i - lineStart, StandardCharsets.UTF_8).split("\t");
+            if (fields.length != 2) {
+                break;
+            }
+            try {
+                committedLength = Long.parseLong(fields[1]);
+            } catch (NumberFormatException e) {
+                break;
+            }
+            committedCommits.add(fields[0]);
+            lineStart = i + 1;
+        }
+        if (lineStart < content.length) {
+            logger.warn("Invalid journal tail in " + journalFile + " (" + (content.length - lineStart) + " bytes), it is dropped");
+        }
+        return lineStart;
+    }
+
+    private void truncateResults() throws IOException {
+        if (!Files.exists(resultsFile)) {
+            return;
+        }
+        try (FileChannel results = FileChannel.open(resultsFile, StandardOpenOption.WRITE)) {
+            if (results.size() > committedLength) {
+                if (committedLength > 0) {
+                    logger.warn("Dropping " + (results.size() - committedLength) + " bytes of uncommitted results");
+                }
+                results.truncate(committedLength);
+            }
+        }
+    }
+}
@@ -3,8 +3,11 @@ package com.group.csv;
 import com.opencsv.CSVWriter;
 import com.opencsv.bean.*;
 import com.group.csv.strategy.ColumnOrderStrategy;
+import com.group.metrics.Metrics;
+import com.group.metrics.Timer;
 import org.apache.log4j.Logger;
 
+import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.Reader;
 import java.io.Writer;
@@ -12,11 +15,16 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class CSVService {
 
     private static final Logger logger = Logger.getLogger(CSVService.class);
 
+    private static final Map<Class<?>, ColumnOrderStrategy<?>> STRATEGIES_WITH_HEADER = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, ColumnOrderStrategy<?>> STRATEGIES_WITHOUT_HEADER = new ConcurrentHashMap<>();
+
     public static <T> List readCsvFile(String filename, Class<T> clazz) {
         List<T> csvSmellList = new ArrayList<>();
         try {
@@ -56,23 +64,61 @@ public class CSVService {
 
     public static <T> boolean writeCsvFileWithStrategy(String filename, List<T> items, Class<T> clazz, boolean header, boolean append) {
 
-        try {
-            Writer writer = new FileWriter(filename, append);
-            ColumnOrderStrategy<T> strategy = new ColumnOrderStrategy<>(clazz, header);
-            StatefulBeanToCsvBuilder<T> builder = new StatefulBeanToCsvBuilder(writer);
-            StatefulBeanToCsv beanWriter = builder
-                    .withMappingStrategy(strategy)
-                    .withSeparator(CSVWriter.DEFAULT_SEPARATOR)
-                    .withQuotechar(CSVWriter.DEFAULT_QUOTE_CHARACTER)
-                    .withEscapechar(CSVWriter.DEFAULT_ESCAPE_CHARACTER)
-                    .withLineEnd(CSVWriter.DEFAULT_LINE_END)
-                    .build();
-            beanWriter.write(items);
-            writer.close();
+        try (Writer writer = new BufferedWriter(new FileWriter(filename, append))) {
+            ColumnOrderStrategy<T> strategy = getColumnOrderStrategy(clazz, header);
+            // the cached strategy keeps the header state of the writer using it
+            synchronized (strategy) {
+                newBeanWriter(writer, strategy).write(items);
+            }
             return true;
         } catch (Exception e) {
             logger.error(e);
         }
         return false;
     }
+
+    /**
+     * Write the items as {@link #writeCsvFileWithStrategy(String, List, Class, boolean, boolean)}, timing the write
+     *
+     * @param metrics metrics of the analysis writing the file
+     */
+    public static <T> boolean writeCsvFileWithStrategy(String filename, List<T> items, Class<T> clazz, boolean header,
+                                                       boolean append, Metrics metrics) {
+        boolean written;
+        try (Timer.Context ignored = metrics.time("csv.write")) {
+            written = writeCsvFileWithStrategy(filename, items, clazz, header, append);
+        }
+        if (written)
+            metrics.add("csv.rows-written", items.size());
+        return written;
+    }
+
+    /**
+     * Get the column order strategy of a bean class, created once since it reflects over the bean annotations.
+     * A strategy is stateful while writing, callers have to synchronize on it.
+     *
+     * @param clazz  bean class
+     * @param header true to write the header
+     * @return the cached strategy
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> ColumnOrderStrategy<T> getColumnOrderStrategy(Class<T> clazz, boolean header) {
+        Map<Class<?>, ColumnOrderStrategy<?>> strategies = header ? STRATEGIES_WITH_HEADER : STRATEGIES_WITHOUT_HEADER;
+        return (ColumnOrderStrategy<T>) strategies.computeIfAbsent(clazz, c -> new ColumnOrderStrategy<>(clazz, header));
+    }
+
+    /**
+     * @param writer   destination of the rows
+     * @param strategy column order strategy of the beans
+     * @return a writer of beans with the separator and quoting used by all the csv files
+     */
+    public static <T> StatefulBeanToCsv<T> newBeanWriter(Writer writer, ColumnOrderStrategy<T> strategy) {
+        return new StatefulBeanToCsvBuilder<T>(writer)
+                .withMappingStrategy(strategy)
+                .withSeparator(CSVWriter.DEFAULT_SEPARATOR)
+                .withQuotechar(CSVWriter.DEFAULT_QUOTE_CHARACTER)
+                .withEscapechar(CSVWriter.DEFAULT_ESCAPE_CHARACTER)
+                .withLineEnd(CSVWriter.DEFAULT_LINE_END)
+                .build();
+    }
 }
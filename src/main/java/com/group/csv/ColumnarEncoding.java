@@ -0,0 +1,172 @@
+package com.group.csv;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encodings of the columns of a row group in the columnar results format
+ */
+final class ColumnarEncoding {
+
+    static final byte[] MAGIC = {'R', 'I', 'C', 'F'};
+    static final int VERSION = 1;
+    static final int ROW_GROUP_MARKER = 0x52475250;
+
+    private ColumnarEncoding() {
+    }
+
+    static void writeHeader(DataOutputStream out) throws IOException {
+        out.write(MAGIC);
+        out.writeByte(VERSION);
+    }
+
+    static void readHeader(DataInputStream in, String filename) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (magic[i] != MAGIC[i])
+                throw new IOException(filename + " is not a columnar results file");
+        }
+        int version = in.readUnsignedByte();
+        if (version != VERSION)
+            throw new IOException("Unsupported version " + version + " of " + filename);
+    }
+
+    /**
+     * @param maxValue max value to store
+     * @return number of bits needed to store values from 0 to maxValue
+     */
+    static int bitWidth(long maxValue) {
+        return 64 - Long.numberOfLeadingZeros(maxValue);
+    }
+
+    /**
+     * Write the first n values with bitWidth bits each, one after another in 64 bit words
+     */
+    static void writePacked(DataOutputStream out, long[] values, int n, int bitWidth) throws IOException {
+        out.writeByte(bitWidth);
+        if (bitWidth == 0)
+            return;
+        long[] words = new long[(int) (((long) n * bitWidth + 63) / 64)];
+        for (int i = 0; i < n; i++) {
+            long bit = (long) i * bitWidth;
+            int word = (int) (bit >>> 6);
+            int shift = (int) (bit & 63);
+            words[word] |= values[i] << shift;
+            if (shift + bitWidth > 64)
+                words[word + 1] |= values[i] >>> (64 - shift);
+        }
+        for (long w : words)
+            out.writeLong(w);
+    }
+
+    static long[] readPacked(DataInputStream in, int n) throws IOException {
+        int bitWidth = in.readUnsignedByte();
+        long[] values = new long[n];
+        if (bitWidth == 0)
+            return values;
+        long[] words = new long[(int) (((long) n * bitWidth + 63) / 64)];
+        for (int i = 0; i < words.length; i++)
+            words[i] = in.readLong();
+        long mask = bitWidth == 64 ? -1L : (1L << bitWidth) - 1;
+        for (int i = 0; i < n; i++) {
+            long bit = (long) i * bitWidth;
+            int word = (int) (bit >>> 6);
+            int shift = (int) (bit & 63);
+            long value = words[word] >>> shift;
+            if (shift + bitWidth > 64)
+                value |= words[word + 1] << (64 - shift);
+            values[i] = value & mask;
+        }
+        return values;
+    }
+
+    /**
+     * Write a string column as a dictionary of its distinct values followed by the packed codes of the rows.
+     * Code 0 is null, code i is the i-th value of the dictionary.
+     */
+    static void writeStrings(DataOutputStream out, String[] values, int n) throws IOException {
+        Map<String, Integer> dictionary = new HashMap<>();
+        String[] entries = new String[n];
+        long[] codes = new long[n];
+        for (int i = 0; i < n; i++) {
+            if (values[i] == null)
+                continue;
+            Integer code = dictionary.get(values[i]);
+            if (code == null) {
+                code = dictionary.size() + 1;
+                dictionary.put(values[i], code);
+                entries[code - 1] = values[i];
+            }
+            codes[i] = code;
+        }
+        out.writeInt(dictionary.size());
+        for (int i = 0; i < dictionary.size(); i++) {
+            byte[] bytes = entries[i].getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        writePacked(out, codes, n, bitWidth(dictionary.size()));
+    }
+
+    static String[] readStrings(DataInputStream in, int n) throws IOException {
+        String[] dictionary = new String[in.readInt() + 1];
+        for (int i = 1; i < dictionary.length; i++) {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        long[] codes = readPacked(in, n);
+        String[] values = new String[n];
+        for (int i = 0; i < n; i++)
+            values[i] = dictionary[(int) codes[i]];
+        return values;
+    }
+
+    /**
+     * Write an int column as the minimum value followed by the packed offsets of the rows from it
+     */
+    static void writeInts(DataOutputStream out, int[] values, int n) throws IOException {
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int i = 0; i < n; i++) {
+            min = Math.min(min, values[i]);
+            max = Math.max(max, values[i]);
+        }
+        if (n == 0)
+            min = max = 0;
+        long[] offsets = new long[n];
+        for (int i = 0; i < n; i++)
+            offsets[i] = (long) values[i] - min;
+        out.writeInt(min);
+        writePacked(out, offsets, n, bitWidth((long) max - min));
+    }
+
+    static int[] readInts(DataInputStream in, int n) throws IOException {
+        int min = in.readInt();
+        long[] offsets = readPacked(in, n);
+        int[] values = new int[n];
+        for (int i = 0; i < n; i++)
+            values[i] = (int) (min + offsets[i]);
+        return values;
+    }
+
+    static void writeBitSet(DataOutputStream out, BitSet bits) throws IOException {
+        long[] words = bits.toLongArray();
+        out.writeInt(words.length);
+        for (long w : words)
+            out.writeLong(w);
+    }
+
+    static BitSet readBitSet(DataInputStream in) throws IOException {
+        long[] words = new long[in.readInt()];
+        for (int i = 0; i < words.length; i++)
+            words[i] = in.readLong();
+        return BitSet.valueOf(words);
+    }
+}
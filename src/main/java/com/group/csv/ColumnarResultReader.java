@@ -0,0 +1,165 @@
+package com.group.csv;
+
+import org.apache.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads a results file written by {@link ColumnarResultWriter}, one row group at a time.
+ * An incomplete row group at the end of the file (e.g. of an interrupted run) is skipped.
+ */
+public class ColumnarResultReader implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(ColumnarResultReader.class);
+
+    private static final ProcessResult.TD_CLASS[] TD_CLASSES = ProcessResult.TD_CLASS.values();
+
+    private final Path file;
+    private final DataInputStream in;
+    private final Inflater inflater = new Inflater();
+
+    /**
+     * @param file results file
+     * @throws IOException if the file cannot be read or is not a columnar results file
+     */
+    public ColumnarResultReader(Path file) throws IOException {
+        this.file = file;
+        this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+        try {
+            ColumnarEncoding.readHeader(in, file.toString());
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Read all the rows of a results file
+     *
+     * @param file results file
+     * @return the rows, in the order they were written
+     * @throws IOException if the file cannot be read
+     */
+    public static List<ProcessResult> readAll(Path file) throws IOException {
+        List<ProcessResult> rows = new ArrayList<>();
+        try (ColumnarResultReader reader = new ColumnarResultReader(file)) {
+            RowGroup rowGroup;
+            while ((rowGroup = reader.nextRowGroup()) != null)
+                rows.addAll(rowGroup.getRows());
+        }
+        return rows;
+    }
+
+    /**
+     * @return the next row group, null at the end of the file
+     * @throws IOException if the file cannot be read or a row group is corrupted
+     */
+    public RowGroup nextRowGroup() throws IOException {
+        String source;
+        int n;
+        byte[] compressed;
+        int rawLength;
+        int first = in.read();
+        if (first == -1)
+            return null;
+        try {
+            int marker = (first << 24) | (in.readUnsignedByte() << 16) | (in.readUnsignedByte() << 8)
+                    | in.readUnsignedByte();
+            if (marker != ColumnarEncoding.ROW_GROUP_MARKER)
+                throw new IOException("Invalid row group in " + file);
+            n = in.readInt();
+            source = in.readUTF();
+            rawLength = in.readInt();
+            compressed = new byte[in.readInt()];
+            in.readFully(compressed);
+        } catch (EOFException e) {
+            logger.warn("Incomplete row group at the end of " + file + ", it is skipped");
+            return null;
+        }
+
+        DataInputStream columns = new DataInputStream(new ByteArrayInputStream(inflate(compressed, rawLength)));
+        String[] commits = ColumnarEncoding.readStrings(columns, n);
+        String[] committerNames = ColumnarEncoding.readStrings(columns, n);
+        String[] committerEmails = ColumnarEncoding.readStrings(columns, n);
+        String[] classes = ColumnarEncoding.readStrings(columns, n);
+        String[] methods = ColumnarEncoding.readStrings(columns, n);
+        String[] refactoringTypes = ColumnarEncoding.readStrings(columns, n);
+        String[] smellTypes = ColumnarEncoding.readStrings(columns, n);
+        int[] tdDifferences = ColumnarEncoding.readInts(columns, n);
+        BitSet nullTdDifferences = ColumnarEncoding.readBitSet(columns);
+        long[] tdClasses = ColumnarEncoding.readPacked(columns, n);
+        BitSet removedWithRefactoring = ColumnarEncoding.readBitSet(columns);
+        BitSet removedWithoutRefactoring = ColumnarEncoding.readBitSet(columns);
+
+        List<ProcessResult> rows = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            rows.add(new ProcessResult(commits[i], committerNames[i], committerEmails[i], classes[i], methods[i],
+                    refactoringTypes[i], smellTypes[i], nullTdDifferences.get(i) ? null : tdDifferences[i],
+                    tdClasses[i] == 0 ? null : TD_CLASSES[(int) tdClasses[i] - 1],
+                    removedWithRefactoring.get(i), removedWithoutRefactoring.get(i)));
+        }
+        return new RowGroup(source, rows);
+    }
+
+    private byte[] inflate(byte[] compressed, int rawLength) throws IOException {
+        inflater.reset();
+        inflater.setInput(compressed);
+        byte[] raw = new byte[rawLength];
+        try {
+            int length = 0;
+            while (length < rawLength && !inflater.finished()) {
+                int inflated = inflater.inflate(raw, length, rawLength - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+                length += inflated;
+            }
+            if (length != rawLength)
+                throw new IOException("Corrupted row group in " + file);
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted row group in " + file, e);
+        }
+        return raw;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            in.close();
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Rows written together, with the name of their origin (empty if not set)
+     */
+    public static class RowGroup {
+        private final String source;
+        private final List<ProcessResult> rows;
+
+        private RowGroup(String source, List<ProcessResult> rows) {
+            this.source = source;
+            this.rows = rows;
+        }
+
+        public String getSource() {
+            return source;
+        }
+
+        public List<ProcessResult> getRows() {
+            return rows;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.group.csv;
+
+import com.group.metrics.Metrics;
+import com.group.metrics.Timer;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Appends results on a columnar binary file, a compact alternative to the csv results file that is faster to load.
+ * Rows are written in row groups, each one compressed on its own, so the file can be truncated after any row
+ * group (as when a run is resumed) and read one row group at a time. In a row group:
+ * <ul>
+ *     <li>string columns are dictionary encoded: distinct values are stored once, and the codes of the rows are
+ *     packed with the bits needed by the size of the dictionary;</li>
+ *     <li>td_difference is stored as packed offsets from the minimum value of the row group;</li>
+ *     <li>td_class takes two bits per row, smell removed flags and null td_difference are bitsets.</li>
+ * </ul>
+ *
+ * @see ColumnarResultReader
+ */
+public class ColumnarResultWriter implements RowWriter<ProcessResult> {
+
+    static final int MAX_ROW_GROUP_ROWS = 65_536;
+    private static final int TD_CLASS_BITS = ColumnarEncoding.bitWidth(ProcessResult.TD_CLASS.values().length);
+
+    private final DataOutputStream out;
+    private final Deflater deflater = new Deflater();
+    private final Metrics metrics;
+
+    /**
+     * @param filename results file, rows are appended and the header is written if the file is empty
+     * @throws IOException if the file cannot be opened
+     */
+    public ColumnarResultWriter(String filename) throws IOException {
+        this(filename, new Metrics());
+    }
+
+    /**
+     * @param filename results file, rows are appended and the header is written if the file is empty
+     * @param metrics  metrics of the analysis writing the results
+     * @throws IOException if the file cannot be opened
+     */
+    public ColumnarResultWriter(String filename, Metrics metrics) throws IOException {
+        this.metrics = metrics;
+        File file = new File(filename);
+        boolean empty = !file.exists() || file.length() == 0;
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        if (empty)
+            ColumnarEncoding.writeHeader(out);
+    }
+
+    @Override
+    public void write(List<ProcessResult> rows) throws IOException {
+        write(rows, "");
+    }
+
+    /**
+     * @param rows   rows to append, in row groups of at most {@value #MAX_ROW_GROUP_ROWS} rows
+     * @param source name of the origin of the rows stored with them (e.g. the project in a merged dataset),
+     *               empty if not needed
+     * @throws IOException if the rows cannot be written
+     */
+    public void write(List<ProcessResult> rows, String source) throws IOException {
+        try (Timer.Context ignored = metrics.time("columnar.write")) {
+            for (int from = 0; from < rows.size(); from += MAX_ROW_GROUP_ROWS)
+                writeRowGroup(rows.subList(from, Math.min(rows.size(), from + MAX_ROW_GROUP_ROWS)), source);
+        }
+        metrics.add("columnar.rows-written", rows.size());
+    }
+
+    private void writeRowGroup(List<ProcessResult> rows, String source) throws IOException {
+        int n = rows.size();
+        String[] commits = new String[n];
+        String[] committerNames = new String[n];
+        String[] committerEmails = new String[n];
+        String[] classes = new String[n];
+        String[] methods = new String[n];
+        String[] refactoringTypes = new String[n];
+        String[] smellTypes = new String[n];
+        int[] tdDifferences = new int[n];
+        BitSet nullTdDifferences = new BitSet(n);
+        long[] tdClasses = new long[n];
+        BitSet removedWithRefactoring = new BitSet(n);
+        BitSet removedWithoutRefactoring = new BitSet(n);
+        for (int i = 0; i < n; i++) {
+            ProcessResult r = rows.get(i);
+            commits[i] = r.getCommitHash();
+            committerNames[i] = r.getCommitterName();
+            committerEmails[i] = r.getCommitterEmail();
+            classes[i] = r.getClassName();
+            methods[i] = r.getMethodName();
+            refactoringTypes[i] = r.getRefactoringType();
+            smellTypes[i] = r.getSmellType();
+            if (r.getTdDifference() != null)
+                tdDifferences[i] = r.getTdDifference();
+            else
+                nullTdDifferences.set(i);
+            // 0 is null
+            tdClasses[i] = r.getTdClass() == null ? 0 : r.getTdClass().ordinal() + 1;
+            removedWithRefactoring.set(i, r.isSmellRemovedWithRefactoring());
+            removedWithoutRefactoring.set(i, r.isSmellRemovedWithoutRefactoring());
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream columns = new DataOutputStream(bytes);
+        ColumnarEncoding.writeStrings(columns, commits, n);
+        ColumnarEncoding.writeStrings(columns, committerNames, n);
+        ColumnarEncoding.writeStrings(columns, committerEmails, n);
+        ColumnarEncoding.writeStrings(columns, classes, n);
+        ColumnarEncoding.writeStrings(columns, methods, n);
+        ColumnarEncoding.writeStrings(columns, refactoringTypes, n);
+        ColumnarEncoding.writeStrings(columns, smellTypes, n);
+        ColumnarEncoding.writeInts(columns, tdDifferences, n);
+        ColumnarEncoding.writeBitSet(columns, nullTdDifferences);
+        ColumnarEncoding.writePacked(columns, tdClasses, n, TD_CLASS_BITS);
+        ColumnarEncoding.writeBitSet(columns, removedWithRefactoring);
+        ColumnarEncoding.writeBitSet(columns, removedWithoutRefactoring);
+        columns.flush();
+        byte[] raw = bytes.toByteArray();
+        byte[] compressed = deflate(raw);
+
+        out.writeInt(ColumnarEncoding.ROW_GROUP_MARKER);
+        out.writeInt(n);
+        out.writeUTF(source);
+        out.writeInt(raw.length);
+        out.writeInt(compressed.length);
+        out.write(compressed);
+        metrics.add("columnar.bytes-written", compressed.length);
+    }
+
+    private byte[] deflate(byte[] raw) {
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+            int length = deflater.deflate(buffer);
+            compressed.write(buffer, 0, length);
+        }
+        return compressed.toByteArray();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            out.close();
+        } finally {
+            deflater.end();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.group.csv;
+
+import com.group.csv.strategy.ColumnOrderStrategy;
+import com.opencsv.bean.StatefulBeanToCsv;
+import com.opencsv.exceptions.CsvDataTypeMismatchException;
+import com.opencsv.exceptions.CsvRequiredFieldEmptyException;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Appends rows on a csv file, with the column order and quoting of {@link CSVService}
+ *
+ * @param <T> bean class of the rows
+ */
+public class CsvRowWriter<T> implements RowWriter<T> {
+
+    private final Writer writer;
+    private final ColumnOrderStrategy<T> strategy;
+    private final StatefulBeanToCsv<T> beanWriter;
+
+    /**
+     * @param filename csv file, rows are appended
+     * @param clazz    bean class of the rows
+     * @param header   true to write the header before the first row
+     * @throws IOException if the file cannot be opened
+     */
+    public CsvRowWriter(String filename, Class<T> clazz, boolean header) throws IOException {
+        this.writer = new BufferedWriter(new FileWriter(filename, true));
+        this.strategy = CSVService.getColumnOrderStrategy(clazz, header);
+        this.beanWriter = CSVService.newBeanWriter(writer, strategy);
+    }
+
+    @Override
+    public void write(List<T> rows) throws IOException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        try {
+            synchronized (strategy) {
+                beanWriter.write(rows);
+            }
+        } catch (CsvDataTypeMismatchException | CsvRequiredFieldEmptyException e) {
+            throw new IOException("Rows not converted to csv", e);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
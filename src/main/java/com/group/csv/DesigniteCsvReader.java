@@ -0,0 +1,157 @@
+package com.group.csv;
+
+import org.apache.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Streaming reader of the smell files produced by Designite (designCodeSmells.csv and implementationCodeSmells.csv).
+ * Lines are split only up to the code smell column, and the other columns are extracted only for the allowed
+ * smells. Repeated strings (project, packages, classes, smell names) are shared between the smells read by the
+ * same reader.
+ */
+public class DesigniteCsvReader {
+
+    private static final Logger logger = Logger.getLogger(DesigniteCsvReader.class);
+
+    // columns of designCodeSmells.csv: project, package, class, smell, cause
+    private static final int DESIGN_SMELL_COLUMN = 3;
+    // columns of implementationCodeSmells.csv: project, package, class, method, smell, cause, line
+    private static final int IMPLEMENTATION_SMELL_COLUMN = 4;
+
+    private final Set<String> allowedSmells;
+    private final Map<String, String> strings = new HashMap<>();
+    private final int[] fieldStart = new int[IMPLEMENTATION_SMELL_COLUMN + 1];
+    private final int[] fieldEnd = new int[IMPLEMENTATION_SMELL_COLUMN + 1];
+    private final boolean[] fieldEscaped = new boolean[IMPLEMENTATION_SMELL_COLUMN + 1];
+
+    /**
+     * @param allowedSmells names of the smells to read, the other ones are skipped
+     */
+    public DesigniteCsvReader(Set<String> allowedSmells) {
+        this.allowedSmells = allowedSmells;
+    }
+
+    /**
+     * Read the allowed smells of designCodeSmells.csv
+     *
+     * @param file     file written by Designite
+     * @param consumer receives each allowed smell, with null method name
+     * @return number of rows read, also the skipped ones
+     */
+    public int readDesignSmells(Path file, Consumer<Smell> consumer) {
+        return read(file, DESIGN_SMELL_COLUMN, consumer);
+    }
+
+    /**
+     * Read the allowed smells of implementationCodeSmells.csv
+     *
+     * @param file     file written by Designite
+     * @param consumer receives each allowed smell
+     * @return number of rows read, also the skipped ones
+     */
+    public int readImplementationSmells(Path file, Consumer<Smell> consumer) {
+        return read(file, IMPLEMENTATION_SMELL_COLUMN, consumer);
+    }
+
+    private int read(Path file, int smellColumn, Consumer<Smell> consumer) {
+        int rows = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            // skip header
+            String line = reader.readLine();
+            while ((line = reader.readLine()) != null) {
+                rows++;
+                if (split(line, smellColumn + 1) <= smellColumn) {
+                    continue;
+                }
+                String codeSmell = allowedSmell(line, smellColumn);
+                if (codeSmell == null) {
+                    continue;
+                }
+                consumer.accept(new Smell(
+                        field(line, 0),
+                        field(line, 1),
+                        field(line, 2),
+                        smellColumn == IMPLEMENTATION_SMELL_COLUMN ? field(line, 3) : null,
+                        codeSmell));
+            }
+        } catch (IOException e) {
+            logger.error(e);
+        }
+        return rows;
+    }
+
+    /**
+     * Split the first fields of a line, fields can be quoted (with "" as escaped quote)
+     * and their leading whitespaces are ignored
+     *
+     * @param line       line to split
+     * @param fieldCount max number of fields to split
+     * @return number of fields found
+     */
+    private int split(String line, int fieldCount) {
+        int length = line.length();
+        int field = 0;
+        int i = 0;
+        while (field < fieldCount && i <= length) {
+            while (i < length && Character.isWhitespace(line.charAt(i))) {
+                i++;
+            }
+            fieldEscaped[field] = false;
+            if (i < length && line.charAt(i) == '"') {
+                fieldStart[field] = ++i;
+                while (i < length) {
+                    if (line.charAt(i) == '"') {
+                        if (i + 1 < length && line.charAt(i + 1) == '"') {
+                            fieldEscaped[field] = true;
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                fieldEnd[field] = i;
+                int comma = line.indexOf(',', i);
+                i = comma < 0 ? length + 1 : comma + 1;
+            } else {
+                int comma = line.indexOf(',', i);
+                fieldStart[field] = i;
+                fieldEnd[field] = comma < 0 ? length : comma;
+                i = fieldEnd[field] + 1;
+            }
+            field++;
+        }
+        return field;
+    }
+
+    /**
+     * @return the shared name of the smell in the given field, null if the smell is not allowed
+     */
+    private String allowedSmell(String line, int smellColumn) {
+        String codeSmell = unescape(line, smellColumn);
+        return allowedSmells.contains(codeSmell) ? share(codeSmell) : null;
+    }
+
+    private String field(String line, int field) {
+        return share(unescape(line, field));
+    }
+
+    private String unescape(String line, int field) {
+        String value = line.substring(fieldStart[field], fieldEnd[field]);
+        return fieldEscaped[field] ? value.replace("\"\"", "\"") : value;
+    }
+
+    private String share(String value) {
+        String shared = strings.putIfAbsent(value, value);
+        return shared != null ? shared : value;
+    }
+}
@@ -0,0 +1,186 @@
+package com.group.csv;
+
+import org.apache.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-lived writer of result rows on a file, csv by default. Rows are buffered and written by a background thread,
+ * when enough rows are collected or a time interval is elapsed, so the analysis does not wait for the disk.
+ * Rows are submitted in batches with a key (e.g. the commit hash), keys of the written batches are notified
+ * to a listener after each flush.
+ *
+ * @param <T> bean class of the rows
+ */
+public class ResultSink<T> implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(ResultSink.class);
+
+    private final String filename;
+    private final WriterOpener<T> opener;
+    private final int flushRows;
+    private final long flushIntervalMillis;
+    private final FlushListener listener;
+    private final BlockingQueue<Batch<T>> queue;
+    private final Batch<T> end = new Batch<>(null, null);
+    private final Thread writerThread;
+    private volatile Exception failure;
+    private boolean closed;
+
+    /**
+     * @param filename            csv file, rows are appended
+     * @param clazz               bean class of the rows
+     * @param header              true to write the header before the first row
+     * @param queueCapacity       max number of batches waiting to be written
+     * @param flushRows           number of buffered rows that triggers a flush
+     * @param flushIntervalMillis max time between two flushes
+     * @param listener            notified with the keys of the batches written by each flush
+     */
+    public ResultSink(String filename, Class<T> clazz, boolean header, int queueCapacity,
+                      int flushRows, long flushIntervalMillis, FlushListener listener) {
+        this(filename, () -> new CsvRowWriter<>(filename, clazz, header), queueCapacity, flushRows,
+                flushIntervalMillis, listener);
+    }
+
+    /**
+     * @param filename            file of the rows, for logging
+     * @param opener              opens the writer of the rows in the writer thread
+     * @param queueCapacity       max number of batches waiting to be written
+     * @param flushRows           number of buffered rows that triggers a flush
+     * @param flushIntervalMillis max time between two flushes
+     * @param listener            notified with the keys of the batches written by each flush
+     */
+    public ResultSink(String filename, WriterOpener<T> opener, int queueCapacity,
+                      int flushRows, long flushIntervalMillis, FlushListener listener) {
+        this.filename = filename;
+        this.opener = opener;
+        this.flushRows = Math.max(1, flushRows);
+        this.flushIntervalMillis = Math.max(1, flushIntervalMillis);
+        this.listener = listener;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.writerThread = new Thread(this::writeLoop, "result-sink");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Add a batch of rows, waiting only if the queue of batches to write is full
+     *
+     * @param key  key of the batch, notified to the listener once its rows are written
+     * @param rows rows of the batch, can be empty
+     * @throws IOException if a previous write failed
+     */
+    public void submit(String key, List<T> rows) throws IOException, InterruptedException {
+        checkFailure();
+        queue.put(new Batch<>(key, rows));
+    }
+
+    /**
+     * Write the buffered rows and stop the writer thread
+     *
+     * @throws IOException if a write failed
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            queue.put(end);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing " + filename, e);
+        }
+        checkFailure();
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("Results not written on " + filename, failure);
+        }
+    }
+
+    private void writeLoop() {
+        List<T> rows = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        try (RowWriter<T> writer = opener.open()) {
+            long lastFlush = System.currentTimeMillis();
+            while (true) {
+                long wait = lastFlush + flushIntervalMillis - System.currentTimeMillis();
+                Batch<T> batch = queue.poll(Math.max(0, wait), TimeUnit.MILLISECONDS);
+                if (batch == end) {
+                    break;
+                }
+                if (batch != null) {
+                    rows.addAll(batch.rows);
+                    keys.add(batch.key);
+                }
+                if (rows.size() >= flushRows || System.currentTimeMillis() - lastFlush >= flushIntervalMillis) {
+                    flush(writer, rows, keys);
+                    lastFlush = System.currentTimeMillis();
+                }
+            }
+            flush(writer, rows, keys);
+        } catch (Exception e) {
+            logger.error("Results not written on " + filename, e);
+            failure = e;
+            // keep consuming, so producers waiting on a full queue are released
+            queue.clear();
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    if (queue.take() == end) {
+                        break;
+                    }
+                } catch (InterruptedException ie) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private void flush(RowWriter<T> writer, List<T> rows, List<String> keys) throws Exception {
+        if (keys.isEmpty()) {
+            return;
+        }
+        logger.info("Updating " + filename + " (" + rows.size() + " rows)");
+        if (!rows.isEmpty()) {
+            writer.write(rows);
+        }
+        writer.flush();
+        listener.flushed(keys);
+        rows.clear();
+        keys.clear();
+    }
+
+    /**
+     * Opens the writer of the rows, called once by the writer thread
+     */
+    public interface WriterOpener<T> {
+        RowWriter<T> open() throws IOException;
+    }
+
+    /**
+     * Notified after the rows of some batches are written
+     */
+    public interface FlushListener {
+        void flushed(List<String> keys) throws IOException;
+    }
+
+    private static class Batch<T> {
+        private final String key;
+        private final List<T> rows;
+
+        private Batch(String key, List<T> rows) {
+            this.key = key;
+            this.rows = rows;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.group.csv;
+
+import com.group.metrics.Metrics;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+
+/**
+ * Format of the results file of an analysis
+ */
+public enum ResultsFormat {
+    // rows of ProcessResult written with CSVService
+    CSV("datasets.csv"),
+    // row groups written with ColumnarResultWriter
+    COLUMNAR("datasets.col");
+
+    private static final Logger logger = Logger.getLogger(ResultsFormat.class);
+
+    private final String filename;
+
+    ResultsFormat(String filename) {
+        this.filename = filename;
+    }
+
+    /**
+     * @return name of the results file in results.dir
+     */
+    public String getFilename() {
+        return filename;
+    }
+
+    /**
+     * @param name name of the format in configuration, "csv" or "columnar"
+     * @return the format
+     */
+    public static ResultsFormat of(String name) {
+        for (ResultsFormat format : values()) {
+            if (format.name().equalsIgnoreCase(name))
+                return format;
+        }
+        throw new IllegalArgumentException("Unknown results format " + name + ", expected csv or columnar");
+    }
+
+    /**
+     * Create a results file without rows, replacing the existing one
+     *
+     * @param filename results file
+     * @return true if the file is created
+     */
+    public boolean createFile(String filename) {
+        if (this == CSV)
+            return CSVService.writeCsvFileWithStrategy(filename, new ArrayList<>(), ProcessResult.class, true, false);
+        try {
+            Files.deleteIfExists(Paths.get(filename));
+            new ColumnarResultWriter(filename).close();
+            return true;
+        } catch (IOException e) {
+            logger.error(e);
+        }
+        return false;
+    }
+
+    /**
+     * @param filename results file, rows are appended
+     * @param header   true to write the csv header before the first row, the columnar header is written
+     *                 whenever the file is empty
+     * @param metrics  metrics of the analysis writing the results
+     * @return writer of the rows
+     * @throws IOException if the file cannot be opened
+     */
+    public RowWriter<ProcessResult> openWriter(String filename, boolean header, Metrics metrics) throws IOException {
+        if (this == CSV)
+            return new CsvRowWriter<>(filename, ProcessResult.class, header);
+        return new ColumnarResultWriter(filename, metrics);
+    }
+}
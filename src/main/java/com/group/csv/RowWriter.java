@@ -0,0 +1,27 @@
+package com.group.csv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Writer of result rows on a file, in a given format. Rows are appended, so a file can be
+ * truncated after any flush and written again (e.g. when a run is resumed).
+ *
+ * @param <T> bean class of the rows
+ */
+public interface RowWriter<T> extends Closeable {
+
+    /**
+     * @param rows rows to append, possibly buffered until the next flush
+     * @throws IOException if the rows cannot be written
+     */
+    void write(List<T> rows) throws IOException;
+
+    /**
+     * Hand the written rows to the file system
+     *
+     * @throws IOException if the rows cannot be written
+     */
+    void flush() throws IOException;
+}
@@ -1,13 +1,17 @@
 package com.group.csv;
 
 import com.opencsv.bean.CsvBindByName;
+import com.group.Utils;
 import com.group.csv.annotation.CsvBindByNameOrder;
 
 import java.io.Serializable;
+import java.util.Objects;
 
 @CsvBindByNameOrder({"Project","Package","Class","Method","Code Smell"})
 public class Smell implements Serializable {
-    
+
+    private static final long serialVersionUID = 1L;
+
     @CsvBindByName(column = "Project")
     private String projectName;
     @CsvBindByName(column = "Package")
@@ -19,6 +23,9 @@ public class Smell implements Serializable {
     @CsvBindByName(column = "Code Smell")
     private String codeSmell;
 
+    private transient String classPath;
+    private transient int hash;
+
     public Smell(String projectName, String packageName, String className, String methodName, String codeSmell) {
         this.projectName = projectName;
         this.packageName = packageName;
@@ -47,20 +54,38 @@ public class Smell implements Serializable {
         return codeSmell;
     }
 
+    /**
+     * @return the class filepath with packages of the smell, e.g. com/group/Foo.java
+     * @see Utils#generateSmellClassPath(String, String)
+     */
+    public String getClassPath() {
+        if (classPath == null)
+            classPath = Utils.generateSmellClassPath(packageName, className);
+        return classPath;
+    }
+
     @Override
     public boolean equals(Object obj) {
-
-        if ( (this.methodName == null && ((Smell)obj).getMethodName() != null) ||
-                (this.methodName != null && ((Smell)obj).getMethodName() == null))
+        if (this == obj)
+            return true;
+        if (!(obj instanceof Smell))
             return false;
 
-        return this.projectName.equals(((Smell)obj).getProjectName()) &&
-                this.packageName.equals(((Smell)obj).getPackageName()) &&
-                this.className.equals(((Smell)obj).getClassName()) &&
-                (
-                    (this.methodName == null && ((Smell)obj).getMethodName() == null) ||
-                        this.methodName.equals(((Smell)obj).getMethodName())
-                ) &&
-                this.codeSmell.equals(((Smell)obj).getCodeSmell());
+        Smell smell = (Smell) obj;
+        return Objects.equals(this.projectName, smell.getProjectName()) &&
+                Objects.equals(this.packageName, smell.getPackageName()) &&
+                Objects.equals(this.className, smell.getClassName()) &&
+                Objects.equals(this.methodName, smell.getMethodName()) &&
+                Objects.equals(this.codeSmell, smell.getCodeSmell());
+    }
+
+    @Override
+    public int hashCode() {
+        int h = hash;
+        if (h == 0) {
+            h = Objects.hash(projectName, packageName, className, methodName, codeSmell);
+            hash = h;
+        }
+        return h;
     }
 }
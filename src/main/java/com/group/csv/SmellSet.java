@@ -0,0 +1,31 @@
+package com.group.csv;
+
+import java.util.*;
+
+/**
+ * Immutable set of the smells of a commit, indexed by smell identity so that membership checks take constant time
+ */
+public class SmellSet {
+
+    private final Set<Smell> smells;
+
+    public SmellSet(Collection<Smell> smellList) {
+        this.smells = new HashSet<>(smellList.size() * 4 / 3 + 1);
+        this.smells.addAll(smellList);
+    }
+
+    public boolean contains(Smell smell) {
+        return smells.contains(smell);
+    }
+
+    /**
+     * @return number of distinct smells
+     */
+    public int size() {
+        return smells.size();
+    }
+
+    public boolean isEmpty() {
+        return smells.isEmpty();
+    }
+}
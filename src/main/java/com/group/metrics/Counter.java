@@ -0,0 +1,23 @@
+package com.group.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Count of events (commits processed, rows written, cache hits...), cheap to update from many threads
+ */
+public class Counter {
+
+    private final LongAdder value = new LongAdder();
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void add(long amount) {
+        value.add(amount);
+    }
+
+    public long get() {
+        return value.sum();
+    }
+}
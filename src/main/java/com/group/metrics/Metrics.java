@@ -0,0 +1,83 @@
+package com.group.metrics;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the timers and counters of an analysis, shared by its workers.
+ * Names are dot separated, starting with the component (e.g. designite.analysis, csv.rows-written).
+ */
+public final class Metrics {
+
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+    public Timer timer(String name) {
+        return timers.computeIfAbsent(name, n -> new Timer());
+    }
+
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, n -> new Counter());
+    }
+
+    /**
+     * Start timing a phase, e.g. <code>try (Timer.Context t = metrics.time("designite.analysis")) {...}</code>
+     *
+     * @param name name of the timer
+     * @return the running measure, recorded when closed
+     */
+    public Timer.Context time(String name) {
+        return timer(name).start();
+    }
+
+    public void increment(String name) {
+        counter(name).increment();
+    }
+
+    public void add(String name, long amount) {
+        counter(name).add(amount);
+    }
+
+    /**
+     * Count a new process started by a worker
+     *
+     * @param program started program (git, java, shell...)
+     */
+    public void fork(String program) {
+        increment("forks");
+        increment("forks." + program);
+    }
+
+    /**
+     * @return timers sorted by name
+     */
+    public Map<String, Timer> getTimers() {
+        return new TreeMap<>(timers);
+    }
+
+    /**
+     * @return counters sorted by name
+     */
+    public Map<String, Counter> getCounters() {
+        return new TreeMap<>(counters);
+    }
+
+    /**
+     * Sum the metrics of many analyses, e.g. the repositories of a batch run
+     *
+     * @param registries metrics of each analysis
+     * @return a new registry with the timers and counters of all of them
+     */
+    public static Metrics combine(Collection<Metrics> registries) {
+        Metrics combined = new Metrics();
+        for (Metrics registry : registries) {
+            for (Map.Entry<String, Timer> timer : registry.timers.entrySet())
+                combined.timer(timer.getKey()).addAll(timer.getValue());
+            for (Map.Entry<String, Counter> counter : registry.counters.entrySet())
+                combined.add(counter.getKey(), counter.getValue().get());
+        }
+        return combined;
+    }
+}
@@ -0,0 +1,167 @@
+package com.group.metrics;
+
+import com.google.gson.GsonBuilder;
+import com.group.Utils;
+import org.apache.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Writes the metrics of an analysis in results.dir, as metrics.json and metrics.csv, periodically and
+ * when closed. On close a summary of timers and counters is logged.
+ */
+public class MetricsReporter implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(MetricsReporter.class);
+
+    static final String METRICS_JSON_FILENAME = "metrics.json";
+    static final String METRICS_CSV_FILENAME = "metrics.csv";
+    private static final String CSV_HEADER = "name,type,count,total_ms,mean_ms,p50_ms,p95_ms,p99_ms,max_ms";
+
+    private final Supplier<Metrics> metrics;
+    private final String resultsDir;
+    private final long startMillis = System.currentTimeMillis();
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * @param metrics         metrics of the analysis
+     * @param resultsDir      directory of the metrics files
+     * @param intervalSeconds seconds between two exports, 0 to export only when closed
+     */
+    public MetricsReporter(Metrics metrics, String resultsDir, int intervalSeconds) {
+        this(() -> metrics, resultsDir, intervalSeconds);
+    }
+
+    /**
+     * @param metrics         current metrics, read at every export (e.g. combined from many analyses)
+     * @param resultsDir      directory of the metrics files
+     * @param intervalSeconds seconds between two exports, 0 to export only when closed
+     */
+    public MetricsReporter(Supplier<Metrics> metrics, String resultsDir, int intervalSeconds) {
+        this.metrics = metrics;
+        this.resultsDir = resultsDir;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (intervalSeconds > 0) {
+            scheduler.scheduleAtFixedRate(this::exportQuietly, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Write the current metrics, replacing the previous files
+     *
+     * @throws IOException if the files cannot be written
+     */
+    public synchronized void export() throws IOException {
+        Metrics current = metrics.get();
+        Map<String, Timer> timers = current.getTimers();
+        Map<String, Counter> counters = current.getCounters();
+
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("uptimeSeconds", (System.currentTimeMillis() - startMillis) / 1000);
+        Map<String, Object> jsonTimers = new LinkedHashMap<>();
+        for (Map.Entry<String, Timer> timer : timers.entrySet()) {
+            Timer t = timer.getValue();
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("count", t.getCount());
+            values.put("totalMillis", round(t.getTotalMillis()));
+            values.put("meanMillis", round(t.getMeanMillis()));
+            values.put("p50Millis", round(t.getPercentileMillis(0.5)));
+            values.put("p95Millis", round(t.getPercentileMillis(0.95)));
+            values.put("p99Millis", round(t.getPercentileMillis(0.99)));
+            values.put("maxMillis", round(t.getMaxMillis()));
+            jsonTimers.put(timer.getKey(), values);
+        }
+        json.put("timers", jsonTimers);
+        Map<String, Long> jsonCounters = new LinkedHashMap<>();
+        for (Map.Entry<String, Counter> counter : counters.entrySet()) {
+            jsonCounters.put(counter.getKey(), counter.getValue().get());
+        }
+        json.put("counters", jsonCounters);
+        write(METRICS_JSON_FILENAME, new GsonBuilder().setPrettyPrinting().create().toJson(json));
+
+        StringBuilder csv = new StringBuilder(CSV_HEADER).append('\n');
+        for (Map.Entry<String, Timer> timer : timers.entrySet()) {
+            Timer t = timer.getValue();
+            csv.append(String.format(Locale.ROOT, "%s,timer,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f%n", timer.getKey(),
+                    t.getCount(), t.getTotalMillis(), t.getMeanMillis(), t.getPercentileMillis(0.5),
+                    t.getPercentileMillis(0.95), t.getPercentileMillis(0.99), t.getMaxMillis()));
+        }
+        for (Map.Entry<String, Counter> counter : counters.entrySet()) {
+            csv.append(counter.getKey()).append(",counter,").append(counter.getValue().get()).append(",,,,,,\n");
+        }
+        write(METRICS_CSV_FILENAME, csv.toString());
+    }
+
+    /**
+     * Log time spent in every phase and the counters
+     */
+    public void logSummary() {
+        Metrics current = metrics.get();
+        StringBuilder summary = new StringBuilder("Metrics summary (")
+                .append((System.currentTimeMillis() - startMillis) / 1000).append(" s):");
+        for (Map.Entry<String, Timer> timer : current.getTimers().entrySet()) {
+            Timer t = timer.getValue();
+            summary.append(String.format(Locale.ROOT,
+                    "%n  %-32s %8d x  total %10.1f s  mean %10.1f ms  p95 %10.1f ms  max %10.1f ms",
+                    timer.getKey(), t.getCount(), t.getTotalMillis() / 1000, t.getMeanMillis(),
+                    t.getPercentileMillis(0.95), t.getMaxMillis()));
+        }
+        for (Map.Entry<String, Counter> counter : current.getCounters().entrySet()) {
+            summary.append(String.format(Locale.ROOT, "%n  %-32s %8d", counter.getKey(), counter.getValue().get()));
+        }
+        logger.info(summary);
+    }
+
+    /**
+     * Stop the periodic export, then write the final metrics and log the summary
+     */
+    @Override
+    public void close() throws IOException {
+        scheduler.shutdownNow();
+        try {
+            export();
+        } finally {
+            logSummary();
+        }
+    }
+
+    private void exportQuietly() {
+        try {
+            export();
+        } catch (IOException e) {
+            logger.warn("Metrics not exported", e);
+        }
+    }
+
+    // files are replaced atomically, so a reader never sees a partial export
+    private void write(String filename, String content) throws IOException {
+        Path target = new File(Utils.preparePathOsBased(false, resultsDir, filename)).toPath();
+        Path tmp = Files.createTempFile(target.getParent(), filename, ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            writer.write(content);
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static double round(double millis) {
+        return Math.round(millis * 1000) / 1000.0;
+    }
+}
@@ -0,0 +1,120 @@
+package com.group.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram of a phase. Durations are counted in buckets of powers of two microseconds,
+ * so percentiles are approximated by the upper bound of their bucket (at most twice the real value).
+ */
+public class Timer {
+
+    // bucket i counts durations in [2^(i-1), 2^i) microseconds, the last one up to about 100 days
+    private static final int BUCKETS = 44;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * Start timing a phase, to be used with try-with-resources
+     *
+     * @return the running measure, recorded when closed
+     */
+    public Context start() {
+        return new Context(this, System.nanoTime());
+    }
+
+    /**
+     * @param nanos duration of a phase
+     */
+    public void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        buckets.incrementAndGet(bucket);
+        count.increment();
+        totalNanos.add(nanos);
+        long max;
+        while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+            // retry with the new max
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getTotalMillis() {
+        return totalNanos.sum() / 1e6;
+    }
+
+    public double getMeanMillis() {
+        long n = getCount();
+        return n == 0 ? 0 : getTotalMillis() / n;
+    }
+
+    public double getMaxMillis() {
+        return maxNanos.get() / 1e6;
+    }
+
+    /**
+     * @param quantile between 0 and 1, e.g. 0.95
+     * @return upper bound in milliseconds of the bucket containing the quantile, 0 if nothing was recorded
+     */
+    public double getPercentileMillis(double quantile) {
+        long n = getCount();
+        if (n == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(quantile * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank)
+                return Math.min((1L << i) / 1000.0, getMaxMillis());
+        }
+        return getMaxMillis();
+    }
+
+    /**
+     * Add the durations recorded by another timer
+     *
+     * @param other timer of the same phase, e.g. in another analysis
+     */
+    void addAll(Timer other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long n = other.buckets.get(i);
+            if (n > 0)
+                buckets.addAndGet(i, n);
+        }
+        count.add(other.count.sum());
+        totalNanos.add(other.totalNanos.sum());
+        long max;
+        long otherMax = other.maxNanos.get();
+        while (otherMax > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, otherMax)) {
+            // retry with the new max
+        }
+    }
+
+    /**
+     * Running measure of a phase
+     */
+    public static class Context implements AutoCloseable {
+        private final Timer timer;
+        private final long startNanos;
+
+        private Context(Timer timer, long startNanos) {
+            this.timer = timer;
+            this.startNanos = startNanos;
+        }
+
+        @Override
+        public void close() {
+            timer.record(System.nanoTime() - startNanos);
+        }
+    }
+}
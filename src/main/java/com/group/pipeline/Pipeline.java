@@ -0,0 +1,88 @@
+package com.group.pipeline;
+
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Set of stages through which commits flow, so different stages of different commits run at the same time.
+ * Queue depths and throughput of the stages are logged periodically and when the pipeline is closed.
+ */
+public class Pipeline implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(Pipeline.class);
+
+    private final List<Stage> stages = new ArrayList<>();
+    private final Map<String, IntSupplier> gauges = new LinkedHashMap<>();
+    private final ScheduledExecutorService monitor;
+
+    /**
+     * @param statsIntervalSeconds seconds between two logs of the stage statistics, 0 to log only on close
+     */
+    public Pipeline(int statsIntervalSeconds) {
+        monitor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "pipeline-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (statsIntervalSeconds > 0) {
+            monitor.scheduleAtFixedRate(this::logStats, statsIntervalSeconds, statsIntervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * @param name          name of the stage, also used for its threads
+     * @param threads       number of threads of the stage
+     * @param queueCapacity max number of tasks waiting in the stage
+     * @return the new stage
+     */
+    public synchronized Stage addStage(String name, int threads, int queueCapacity) {
+        Stage stage = new Stage(name, threads, queueCapacity);
+        stages.add(stage);
+        return stage;
+    }
+
+    /**
+     * Add a value to log with the stage statistics, e.g. the size of a queue not owned by a stage
+     *
+     * @param name  name of the value
+     * @param gauge supplier of the current value
+     */
+    public synchronized void addGauge(String name, IntSupplier gauge) {
+        gauges.put(name, gauge);
+    }
+
+    public synchronized void logStats() {
+        StringBuilder stats = new StringBuilder("Pipeline:");
+        for (Map.Entry<String, IntSupplier> gauge : gauges.entrySet()) {
+            stats.append(' ').append(gauge.getKey()).append('=').append(gauge.getValue().getAsInt());
+        }
+        for (Stage stage : stages) {
+            stats.append(' ').append(stage);
+        }
+        logger.info(stats);
+    }
+
+    /**
+     * Stop the stages, interrupting running tasks, and log the final statistics
+     */
+    @Override
+    public void close() throws InterruptedException {
+        monitor.shutdownNow();
+        List<Stage> toClose;
+        synchronized (this) {
+            toClose = new ArrayList<>(stages);
+        }
+        for (Stage stage : toClose) {
+            stage.close();
+        }
+        logStats();
+    }
+}
@@ -0,0 +1,125 @@
+package com.group.pipeline;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Step of the analysis run by its own pool of threads. Tasks wait in a bounded queue,
+ * submitting to a full queue blocks until a task is taken.
+ */
+public class Stage {
+
+    private final String name;
+    private final int threads;
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+    private final long startNanos = System.nanoTime();
+
+    Stage(String name, int threads, int queueCapacity) {
+        this.name = name;
+        this.threads = Math.max(1, threads);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(this.threads, this.threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                r -> {
+                    Thread thread = new Thread(r, name + "-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (r, pool) -> {
+                    if (pool.isShutdown())
+                        throw new RejectedExecutionException("Stage " + name + " is closed");
+                    try {
+                        pool.getQueue().put(r);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RejectedExecutionException(e);
+                    }
+                });
+    }
+
+    /**
+     * Run a task on the stage, waiting if the queue of the stage is full
+     *
+     * @param task task to run
+     * @return the result of the task
+     */
+    public <T> CompletableFuture<T> submit(Task<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            long start = System.nanoTime();
+            try {
+                future.complete(task.run());
+            } catch (Throwable t) {
+                failed.incrementAndGet();
+                future.completeExceptionally(t);
+            } finally {
+                busyNanos.addAndGet(System.nanoTime() - start);
+                completed.incrementAndGet();
+            }
+        });
+        return future;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return completed tasks per minute since the stage was created
+     */
+    public double getThroughput() {
+        double minutes = (System.nanoTime() - startNanos) / 60e9;
+        return minutes <= 0 ? 0 : completed.get() / minutes;
+    }
+
+    /**
+     * @return fraction of the time the threads of the stage were busy
+     */
+    public double getUtilization() {
+        double available = (double) (System.nanoTime() - startNanos) * threads;
+        return available <= 0 ? 0 : busyNanos.get() / available;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[queue=%d active=%d/%d done=%d failed=%d %.1f/min busy=%.0f%%]",
+                name, getQueueDepth(), getActiveCount(), threads, getCompleted(), getFailed(),
+                getThroughput(), getUtilization() * 100);
+    }
+
+    void close() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Work done by a stage
+     */
+    public interface Task<T> {
+        T run() throws Exception;
+    }
+}
@@ -1,14 +1,12 @@
 package com.group.pojo;
 
-import org.refactoringminer.api.Refactoring;
-
 import java.util.List;
 
 public class Commit {
     private String hash;
-    private List<Refactoring> refactoringList;
+    private List<RefactoringRecord> refactoringList;
 
-    public Commit(String hash, List<Refactoring> refactoringList) {
+    public Commit(String hash, List<RefactoringRecord> refactoringList) {
         this.hash = hash;
         this.refactoringList = refactoringList;
     }
@@ -21,11 +19,11 @@ public class Commit {
         this.hash = hash;
     }
 
-    public List<Refactoring> getRefactoringList() {
+    public List<RefactoringRecord> getRefactoringList() {
         return refactoringList;
     }
 
-    public void setRefactoringList(List<Refactoring> refactoringList) {
+    public void setRefactoringList(List<RefactoringRecord> refactoringList) {
         this.refactoringList = refactoringList;
     }
 }
@@ -0,0 +1,59 @@
+package com.group.pojo;
+
+import org.refactoringminer.api.Refactoring;
+import org.refactoringminer.api.RefactoringType;
+
+/**
+ * Compact copy of a RefactoringMiner refactoring, holding only what the analysis needs,
+ * so the refactoring object graph can be garbage collected as soon as it is detected
+ */
+public class RefactoringRecord {
+
+    private final RefactoringType refactoringType;
+    private final String filePath;
+    private final String codeElement;
+    private final String description;
+
+    public RefactoringRecord(RefactoringType refactoringType, String filePath, String codeElement, String description) {
+        this.refactoringType = refactoringType;
+        this.filePath = filePath;
+        this.codeElement = codeElement;
+        this.description = description;
+    }
+
+    /**
+     * @param refactoring     refactoring detected by RefactoringMiner
+     * @param withDescription if true keep also the textual description of the refactoring
+     * @return the compact record of the refactoring
+     */
+    public static RefactoringRecord of(Refactoring refactoring, boolean withDescription) {
+        boolean hasLeftSide = refactoring.leftSide() != null && !refactoring.leftSide().isEmpty();
+        return new RefactoringRecord(
+                refactoring.getRefactoringType(),
+                hasLeftSide ? refactoring.leftSide().get(0).getFilePath() : null,
+                hasLeftSide ? refactoring.leftSide().get(0).getCodeElement() : null,
+                withDescription ? refactoring.toString().replace('\t', ' ') : null);
+    }
+
+    public RefactoringType getRefactoringType() {
+        return refactoringType;
+    }
+
+    /**
+     * @return file path of the first left side code range, null if there is no left side
+     */
+    public String getFilePath() {
+        return filePath;
+    }
+
+    /**
+     * @return code element of the first left side code range, null if there is no left side
+     */
+    public String getCodeElement() {
+        return codeElement;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
@@ -0,0 +1,115 @@
+package com.group.pojo.sonar;
+
+import com.group.Utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable map from class path (e.g. com/group/Foo.java) to the technical debt (sqale_index) of the file,
+ * built once per analysis. Keys and primitive values are stored in open addressing arrays.
+ */
+public final class DebtIndex {
+
+	public static final String TD_METRIC = "sqale_index";
+
+	public static final DebtIndex EMPTY = new Builder().build();
+
+	private final String[] keys;
+	private final int[] values;
+	private final int mask;
+	private final int size;
+
+	private DebtIndex(Map<String, Integer> debts) {
+		int capacity = Integer.highestOneBit(Math.max(2, debts.size() * 2) - 1) << 1;
+		this.keys = new String[capacity];
+		this.values = new int[capacity];
+		this.mask = capacity - 1;
+		this.size = debts.size();
+		for (Map.Entry<String, Integer> e : debts.entrySet()) {
+			int i = indexFor(e.getKey());
+			while (keys[i] != null)
+				i = (i + 1) & mask;
+			keys[i] = e.getKey();
+			values[i] = e.getValue();
+		}
+	}
+
+	/**
+	 * Build the index of the file components of an analysis
+	 *
+	 * @param analysis analysis retrieved from SonarQube Server, may be null
+	 * @return the debt index, empty if there is no analysis
+	 */
+	public static DebtIndex of(Analysis analysis) {
+		if (analysis == null || analysis.getComponents() == null)
+			return EMPTY;
+		Builder builder = new Builder();
+		for (Component c : analysis.getComponents())
+			builder.add(c);
+		return builder.build();
+	}
+
+	/**
+	 * @param classPath class path with packages, e.g. com/group/Foo.java
+	 * @return technical debt of the class, 0 if unknown
+	 */
+	public int get(String classPath) {
+		if (classPath == null)
+			return 0;
+		int i = indexFor(classPath);
+		String key;
+		while ((key = keys[i]) != null) {
+			if (key.equals(classPath))
+				return values[i];
+			i = (i + 1) & mask;
+		}
+		return 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	private int indexFor(String key) {
+		int h = key.hashCode();
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	/**
+	 * Collects debts of components, the first value found for a class path is kept
+	 */
+	public static class Builder {
+
+		private final Map<String, Integer> debts = new LinkedHashMap<>();
+
+		public Builder add(Component component) {
+			if (component.getPath() == null || component.getMeasures() == null)
+				return this;
+			for (Measure m : component.getMeasures()) {
+				if (TD_METRIC.equals(m.getMetric()))
+					return add(component.getPath(), Integer.parseInt(m.getValue()));
+			}
+			return this;
+		}
+
+		/**
+		 * @param path file path relative to the project, as returned by SonarQube Server
+		 * @param debt technical debt of the file
+		 */
+		public Builder add(String path, int debt) {
+			debts.putIfAbsent(Utils.getPackagesWithClassPath(path), debt);
+			return this;
+		}
+
+		public Builder addAll(Builder other) {
+			for (Map.Entry<String, Integer> e : other.debts.entrySet())
+				debts.putIfAbsent(e.getKey(), e.getValue());
+			return this;
+		}
+
+		public DebtIndex build() {
+			return new DebtIndex(debts);
+		}
+	}
+}
@@ -0,0 +1,137 @@
+package com.group.worker;
+
+import com.group.pojo.Commit;
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Commits with refactorings, consumed while RefactoringMiner is still mining the history.
+ * The miner runs on its own thread and feeds a bounded queue: when the analysis is slower than
+ * the mining, the miner waits, so only a few commits are kept in memory. Closing the stream stops the miner.
+ */
+public class CommitStream implements AutoCloseable {
+
+    private static final Logger logger = Logger.getLogger(CommitStream.class);
+
+    // marks the end of the stream in the queue
+    private static final Commit END = new Commit(null, null);
+
+    private final BlockingQueue<Commit> queue;
+    private volatile Throwable failure;
+    private volatile boolean closed;
+    private boolean ended;
+    private Thread producerThread;
+
+    CommitStream(int capacity) {
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+    }
+
+    /**
+     * Start the producer on a new thread, the stream ends when the producer returns
+     *
+     * @param name     name of the producer thread
+     * @param producer code publishing commits with {@link #publish(Commit)}
+     * @return this stream
+     */
+    synchronized CommitStream start(String name, Producer producer) {
+        producerThread = new Thread(() -> {
+            try {
+                producer.run(this);
+            } catch (Throwable t) {
+                if (closed) {
+                    logger.info("Refactoring mining stopped");
+                } else {
+                    logger.error("Refactoring mining failed", t);
+                    failure = t;
+                }
+            } finally {
+                putUninterruptibly(END);
+            }
+        }, name);
+        producerThread.setDaemon(true);
+        producerThread.start();
+        return this;
+    }
+
+    /**
+     * Add a commit to the stream, waiting while the queue is full. Commits published after
+     * the stream is closed are discarded.
+     *
+     * @param commit commit with refactorings
+     */
+    void publish(Commit commit) {
+        if (!closed)
+            putUninterruptibly(commit);
+    }
+
+    /**
+     * Get the next commit, waiting for the miner if needed
+     *
+     * @return the next commit, null when mining is finished
+     * @throws Exception if mining failed
+     */
+    public Commit next() throws Exception {
+        if (ended)
+            return null;
+        Commit commit = queue.take();
+        if (commit == END) {
+            ended = true;
+            if (failure != null)
+                throw failure instanceof Exception ? (Exception) failure : new Exception(failure);
+            return null;
+        }
+        return commit;
+    }
+
+    /**
+     * @return number of mined commits waiting to be consumed
+     */
+    public int size() {
+        return queue.size();
+    }
+
+    /**
+     * @return true if the stream is closed, the miner should stop mining
+     */
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Stop consuming the stream: the miner is interrupted, skips the remaining commits and its next
+     * commits are discarded
+     */
+    @Override
+    public void close() {
+        closed = true;
+        queue.clear();
+        synchronized (this) {
+            if (producerThread != null && producerThread != Thread.currentThread())
+                producerThread.interrupt();
+        }
+    }
+
+    private void putUninterruptibly(Commit commit) {
+        boolean interrupted = false;
+        // nobody consumes a closed stream, do not wait for free space
+        while (!closed) {
+            try {
+                queue.put(commit);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Mining code that publishes commits on the stream
+     */
+    interface Producer {
+        void run(CommitStream stream) throws Exception;
+    }
+}
@@ -1,16 +1,29 @@
 package com.group.worker;
 
 import com.group.Utils;
-import com.group.csv.DesignSmell;
-import com.group.csv.ImplementationSmell;
+import com.group.cache.SmellCache;
 import com.group.csv.CSVService;
+import com.group.csv.DesigniteCsvReader;
 import com.group.csv.Smell;
+import com.group.metrics.Metrics;
+import com.group.metrics.Timer;
 import org.apache.log4j.Logger;
 import org.buildobjects.process.ProcBuilder;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
 
 public class DesigniteWorker {
 
@@ -20,74 +33,329 @@ public class DesigniteWorker {
     private static final String DESIGN_CODE_SMELLS_FILENAME = "designCodeSmells.csv";
     private static final String IMPLEMENTATION_CODE_SMELLS_FILENAME = "implementationCodeSmells.csv";
     private static final String FILTERED_SMELLS_FILENAME = "filteredSmells.csv";
+    private static final String STAGING_FOLDER = "staging";
+    // approximated smell lists of incremental analyses are cached apart from the exact ones
+    private static final String INCREMENTAL_CACHE_KEY_SUFFIX = "_inc";
 
     private String designiteDir;
     private String repoDir;
     private String resultsDir;
+    private SmellCache smellCache;
+    private boolean keepOutput;
+    private boolean writeFilteredSmells;
+    private Mode mode = Mode.PROCESS;
+    private Set<String> smellTypes = Utils.allowedSmell.keySet();
+    // smells are cached after filtering, entries of a custom filter are kept apart
+    private String cacheKeySuffix = "";
+    private Semaphore processPermits;
+    private Metrics metrics = new Metrics();
 
     public DesigniteWorker(String designiteDir, String repoDir, String resultsDir){
+        this(designiteDir, repoDir, resultsDir, null);
+    }
+
+    public DesigniteWorker(String designiteDir, String repoDir, String resultsDir, SmellCache smellCache){
+        this(designiteDir, repoDir, resultsDir, smellCache, null, true, true);
+    }
+
+    /**
+     * @param designiteDir        directory of DesigniteJava.jar
+     * @param repoDir             directory of the sources to analyze
+     * @param resultsDir          directory of the results
+     * @param smellCache          cache of the smells by tree hash, null to always run Designite
+     * @param outputDir           directory for Designite output and staging folders (e.g. on tmpfs),
+     *                            null or empty to use a folder in resultsDir
+     * @param keepOutput          if false Designite output is deleted once read
+     * @param writeFilteredSmells if true write the filtered smells in Designite output, for debugging
+     */
+    public DesigniteWorker(String designiteDir, String repoDir, String resultsDir, SmellCache smellCache,
+                           String outputDir, boolean keepOutput, boolean writeFilteredSmells){
         this.designiteDir = designiteDir;
         this.repoDir = repoDir;
-        this.resultsDir = Utils.preparePathOsBased(true, resultsDir, DESIGNITE_RESULTS_FOLDER);
+        this.resultsDir = outputDir == null || outputDir.isEmpty() ?
+                Utils.preparePathOsBased(true, resultsDir, DESIGNITE_RESULTS_FOLDER) :
+                Utils.preparePathOsBased(true, outputDir);
+        this.smellCache = smellCache;
+        this.keepOutput = keepOutput;
+        this.writeFilteredSmells = writeFilteredSmells;
     }
 
-    public List<Smell> execute(String folderName) {
+    /**
+     * @param mode how Designite is run, a new JVM for each analysis by default
+     * @return this worker
+     */
+    public DesigniteWorker withMode(Mode mode) {
+        this.mode = mode;
+        return this;
+    }
 
-        logger.info("Run Designite...");
+    /**
+     * @param smellTypes names of the smells to keep, the other rows of Designite output are skipped while reading
+     * @return this worker
+     */
+    public DesigniteWorker withSmellFilter(Set<String> smellTypes) {
+        this.smellTypes = smellTypes;
+        this.cacheKeySuffix = "_" + sha1(String.join(",", new TreeSet<>(smellTypes)));
+        return this;
+    }
 
-        String outputPath = Utils.preparePathOsBased(true, this.resultsDir, System.currentTimeMillis() + "_" + folderName);
-
-        new ProcBuilder("java")
-                .withWorkingDirectory(new File(designiteDir))
-                .withArg("-jar")
-                .withArg("DesigniteJava.jar")
-                .withArg("-i")
-                .withArg(repoDir)
-                .withArg("-o")
-                .withArg(outputPath)
-                .withNoTimeout()
-                .run();
-        logger.info("Designite Done!");
+    /**
+     * @param processPermits permits shared with other workers, one is held by each Designite analysis
+     * @return this worker
+     */
+    public DesigniteWorker withProcessPermits(Semaphore processPermits) {
+        this.processPermits = processPermits;
+        return this;
+    }
 
-        logger.info("Read " + DESIGN_CODE_SMELLS_FILENAME);
-        List<DesignSmell> designSmellList = CSVService.readCsvFile(
-                outputPath + DESIGN_CODE_SMELLS_FILENAME, DesignSmell.class);
-        logger.info("Read " + IMPLEMENTATION_CODE_SMELLS_FILENAME);
-        List<ImplementationSmell> implementationSmellList = CSVService.readCsvFile(
-                outputPath + IMPLEMENTATION_CODE_SMELLS_FILENAME,
-                ImplementationSmell.class);
+    /**
+     * @param metrics metrics of the analysis using this worker
+     * @return this worker
+     */
+    public DesigniteWorker withMetrics(Metrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
 
-        List<Smell> smellList = new ArrayList<>();
-        for(DesignSmell ds : designSmellList) {
-            if (Utils.allowedSmell.containsKey(ds.getCodeSmell())) {
-                smellList.add(
-                        new Smell(
-                                ds.getProjectName(),
-                                ds.getPackageName(),
-                                ds.getClassName(),
-                                null,
-                                ds.getCodeSmell())
-                );
+    /**
+     * Get the smells of the checked out tree, running Designite only if the tree is not in cache
+     *
+     * @param folderName name of the folder for Designite results (commit hash)
+     * @param treeHash   hash of the checked out git tree, used as cache key
+     * @return filtered smell list
+     */
+    public List<Smell> execute(String folderName, String treeHash) {
+        if (smellCache == null || treeHash == null)
+            return execute(folderName);
+
+        List<Smell> smellList = getCached(getCacheKey(treeHash));
+        if (smellList == null) {
+            smellList = execute(folderName);
+            smellCache.put(getCacheKey(treeHash), smellList);
+        }
+        return smellList;
+    }
+
+    /**
+     * Get the smells of a commit analyzing only the directories changed since the previous commit.
+     * Changed directories are exported in a staging folder and analyzed by Designite, smells of the
+     * unchanged directories are taken from the previous commit. Smells depending on classes outside the
+     * changed directories (e.g. hierarchy or modularization smells) are therefore an approximation:
+     * an exact smell list of the tree is used if cached, the approximated one is cached under its own key
+     * so full analyses never read it.
+     *
+     * @param folderName         name of the folder for Designite results (commit hash)
+     * @param treeHash           hash of the git tree of the commit, used as cache key
+     * @param previousSmellList  smell list of the previous commit
+     * @param changedDirectories relative paths of the directories with changed java files
+     * @param exporter           writes the files of the commit contained in the given directories
+     * @return filtered smell list
+     * @throws IOException if changed directories cannot be exported
+     */
+    public List<Smell> executeIncremental(String folderName, String treeHash, List<Smell> previousSmellList,
+                                          Set<String> changedDirectories, SourceExporter exporter) throws IOException {
+        List<Smell> smellList = null;
+        if (smellCache != null && treeHash != null) {
+            smellList = getCached(getCacheKey(treeHash));
+            if (smellList == null)
+                smellList = getCached(getCacheKey(treeHash) + INCREMENTAL_CACHE_KEY_SUFFIX);
+        }
+        if (smellList != null)
+            return smellList;
+
+        // smells of the unchanged directories are the same of the previous commit
+        Set<String> changedPackages = new HashSet<>();
+        for (String directory : changedDirectories)
+            changedPackages.add(getPackagePath(directory));
+        smellList = new ArrayList<>();
+        for (Smell s : previousSmellList) {
+            if (!changedPackages.contains(getPackagePath(s)))
+                smellList.add(s);
+        }
+
+        if (!changedDirectories.isEmpty()) {
+            logger.info("Incremental Designite on " + changedDirectories.size() + " changed directories");
+            // staging folder keeps the project name, so Designite names the project as in repoDir
+            String stagingPath = Utils.preparePathOsBased(false,
+                    createFolder(Utils.preparePathOsBased(false, this.resultsDir, STAGING_FOLDER), folderName),
+                    Utils.getProjectNameFromRepoDir(repoDir));
+            try {
+                exporter.export(changedDirectories, stagingPath);
+                // changed directories whose java files are all deleted have no smells left
+                if (containsJavaFiles(Paths.get(stagingPath))) {
+                    smellList.addAll(runDesignite(stagingPath, folderName));
+                } else {
+                    logger.info("No java files left in the changed directories, Designite not run");
+                }
+            } finally {
+                Utils.deleteDirectory(new File(stagingPath).getParentFile());
             }
         }
 
-        for(ImplementationSmell is : implementationSmellList) {
-            if (Utils.allowedSmell.containsKey(is.getCodeSmell())) {
-                smellList.add(
-                        new Smell(
-                                is.getProjectName(),
-                                is.getPackageName(),
-                                is.getClassName(),
-                                is.getMethodName(),
-                                is.getCodeSmell())
-                );
+        if (smellCache != null && treeHash != null)
+            smellCache.put(getCacheKey(treeHash) + INCREMENTAL_CACHE_KEY_SUFFIX, smellList);
+        return smellList;
+    }
+
+    /**
+     * Smells name their project, so a cache shared by many repositories keeps apart the same tree of two
+     * of them (e.g. forks)
+     */
+    private String getCacheKey(String treeHash) {
+        return Utils.getProjectNameFromRepoDir(repoDir) + "_" + treeHash + cacheKeySuffix;
+    }
+
+    /**
+     * Create a new folder named after the analyzed commit, unique even if other workers analyze the same commit
+     * at the same time, so deleting it never touches the folder of another analysis
+     *
+     * @return path of the folder
+     */
+    private static String createFolder(String parentDir, String folderName) throws IOException {
+        Path parent = Files.createDirectories(Paths.get(parentDir));
+        return Files.createTempDirectory(parent, folderName + "_").toString();
+    }
+
+    private static boolean containsJavaFiles(Path directory) throws IOException {
+        if (!Files.isDirectory(directory))
+            return false;
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths.anyMatch(path -> path.toString().endsWith(".java") && Files.isRegularFile(path));
+        }
+    }
+
+    private static String sha1(String value) {
+        try {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-1").digest(value.getBytes(StandardCharsets.UTF_8)))
+                hex.append(String.format("%02x", b));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private List<Smell> getCached(String key) {
+        List<Smell> smellList = smellCache.get(key);
+        metrics.increment(smellList != null ? "designite.cache-hits" : "designite.cache-misses");
+        return smellList;
+    }
+
+    /**
+     * Get the package path of a directory relative to the repository (e.g. src/main/java/com/group -> com/group)
+     */
+    private static String getPackagePath(String directory) {
+        String packagePath = Utils.getPackagesWithClassPath(directory.concat("/"));
+        return packagePath.endsWith("/") ? packagePath.substring(0, packagePath.length() - 1) : packagePath;
+    }
+
+    /**
+     * Get the package path of a smell (e.g. com.group, Foo -> com/group)
+     */
+    private static String getPackagePath(Smell smell) {
+        String classPath = Utils.generateSmellClassPath(smell.getPackageName(), smell.getClassName());
+        int lastSlash = classPath.lastIndexOf('/');
+        return lastSlash < 0 ? "" : classPath.substring(0, lastSlash);
+    }
+
+    public List<Smell> execute(String folderName) {
+        return runDesignite(repoDir, folderName);
+    }
+
+    private List<Smell> runDesignite(String inputDir, String folderName) {
+
+        logger.info("Run Designite...");
+
+        String outputPath;
+        try {
+            outputPath = Utils.preparePathOsBased(true, createFolder(this.resultsDir, folderName));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if (processPermits != null) {
+            try (Timer.Context ignored = metrics.time("designite.permit-wait")) {
+                processPermits.acquireUninterruptibly();
+            }
+        }
+        try (Timer.Context ignored = metrics.time("designite.analysis")) {
+            if (mode == Mode.IN_PROCESS) {
+                try {
+                    InProcessDesignite.get(designiteDir).analyze(inputDir, outputPath);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            } else {
+                metrics.fork("java");
+                new ProcBuilder("java")
+                        .withWorkingDirectory(new File(designiteDir))
+                        .withArg("-jar")
+                        .withArg("DesigniteJava.jar")
+                        .withArg("-i")
+                        .withArg(inputDir)
+                        .withArg("-o")
+                        .withArg(outputPath)
+                        .withNoTimeout()
+                        .run();
             }
+        } finally {
+            if (processPermits != null)
+                processPermits.release();
+        }
+        logger.info("Designite Done!");
+
+        List<Smell> smellList = new ArrayList<>();
+        try (Timer.Context ignored = metrics.time("designite.read")) {
+            // smells are filtered while tokenizing, before the other fields are read
+            DesigniteCsvReader reader = new DesigniteCsvReader(smellTypes);
+            logger.info("Read " + DESIGN_CODE_SMELLS_FILENAME);
+            int rows = reader.readDesignSmells(Paths.get(outputPath + DESIGN_CODE_SMELLS_FILENAME), smellList::add);
+            logger.info("Read " + IMPLEMENTATION_CODE_SMELLS_FILENAME);
+            rows += reader.readImplementationSmells(Paths.get(outputPath + IMPLEMENTATION_CODE_SMELLS_FILENAME),
+                    smellList::add);
+            metrics.add("filters.smells-found", rows);
         }
+        metrics.add("filters.smells-kept", smellList.size());
 
-        logger.info("Generating " + FILTERED_SMELLS_FILENAME);
-        CSVService.writeCsvFileWithStrategy(outputPath + FILTERED_SMELLS_FILENAME, smellList, Smell.class, true, false);
+        if (writeFilteredSmells) {
+            logger.info("Generating " + FILTERED_SMELLS_FILENAME);
+            CSVService.writeCsvFileWithStrategy(outputPath + FILTERED_SMELLS_FILENAME, smellList, Smell.class, true, false,
+                    metrics);
+        }
+        if (!keepOutput) {
+            Utils.deleteDirectory(new File(outputPath));
+        }
 
         return smellList;
     }
 
+    /**
+     * How Designite is run
+     */
+    public enum Mode {
+        // a new JVM for each analysis
+        PROCESS,
+        // DesigniteJava.jar loaded once in the running JVM
+        IN_PROCESS;
+
+        /**
+         * @param name name of the mode in configuration, "process" or "in-process"
+         * @return the mode
+         */
+        public static Mode of(String name) {
+            for (Mode mode : values()) {
+                if (mode.name().replace('_', '-').equalsIgnoreCase(name))
+                    return mode;
+            }
+            throw new IllegalArgumentException("Unknown Designite mode " + name + ", expected process or in-process");
+        }
+    }
+
+    /**
+     * Exports the sources of a commit contained in some directories
+     */
+    public interface SourceExporter {
+        void export(Set<String> directories, String targetDir) throws IOException;
+    }
+
 }
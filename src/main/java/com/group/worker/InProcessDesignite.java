@@ -0,0 +1,93 @@
+package com.group.worker;
+
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+
+/**
+ * DesigniteJava loaded once in the running JVM, with its own class loader, instead of starting a new JVM
+ * for each analysis. Analyses reuse loaded classes and JIT compiled code. Designite keeps static state,
+ * so analyses run one at a time.
+ */
+class InProcessDesignite {
+
+    private static final Logger logger = Logger.getLogger(InProcessDesignite.class);
+
+    private static final String DESIGNITE_JAR = "DesigniteJava.jar";
+    private static final Map<String, InProcessDesignite> instances = new HashMap<>();
+
+    private final ClassLoader classLoader;
+    private final Method mainMethod;
+
+    private InProcessDesignite(File jar) throws IOException {
+        String mainClassName;
+        try (JarFile jarFile = new JarFile(jar)) {
+            Manifest manifest = jarFile.getManifest();
+            mainClassName = manifest == null ? null : manifest.getMainAttributes().getValue("Main-Class");
+        }
+        if (mainClassName == null) {
+            throw new IOException("Main-Class not found in the manifest of " + jar);
+        }
+        // parent is the extension class loader, so Designite does not see the libraries of this project
+        classLoader = new URLClassLoader(new URL[]{jar.toURI().toURL()}, ClassLoader.getSystemClassLoader().getParent());
+        try {
+            mainMethod = classLoader.loadClass(mainClassName).getMethod("main", String[].class);
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            throw new IOException("Invalid main class " + mainClassName + " in " + jar, e);
+        }
+        if (!Modifier.isStatic(mainMethod.getModifiers())) {
+            throw new IOException("Main method of " + mainClassName + " is not static");
+        }
+        logger.info("Designite loaded in process from " + jar);
+    }
+
+    /**
+     * Get the Designite instance of a directory, loaded at the first call
+     *
+     * @param designiteDir directory of DesigniteJava.jar
+     * @return the shared instance
+     * @throws IOException if the jar cannot be loaded
+     */
+    static InProcessDesignite get(String designiteDir) throws IOException {
+        File jar = new File(designiteDir, DESIGNITE_JAR).getCanonicalFile();
+        synchronized (instances) {
+            InProcessDesignite instance = instances.get(jar.getPath());
+            if (instance == null) {
+                instance = new InProcessDesignite(jar);
+                instances.put(jar.getPath(), instance);
+            }
+            return instance;
+        }
+    }
+
+    /**
+     * Run Designite as with {@code java -jar DesigniteJava.jar -i inputDir -o outputPath}
+     *
+     * @param inputDir   directory of the sources to analyze
+     * @param outputPath directory of Designite results
+     */
+    synchronized void analyze(String inputDir, String outputPath) {
+        Thread thread = Thread.currentThread();
+        ClassLoader contextClassLoader = thread.getContextClassLoader();
+        thread.setContextClassLoader(classLoader);
+        try {
+            mainMethod.invoke(null, (Object) new String[]{"-i", inputDir, "-o", outputPath});
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("Designite failed on " + inputDir, e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Designite main method not accessible", e);
+        } finally {
+            thread.setContextClassLoader(contextClassLoader);
+        }
+    }
+}
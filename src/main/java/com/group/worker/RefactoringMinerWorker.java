@@ -1,45 +1,113 @@
 package com.group.worker;
 
 import com.group.Utils;
+import com.group.cache.RefactoringStore;
+import com.group.metrics.Metrics;
+import com.group.metrics.Timer;
 import com.group.csv.CSVService;
 import com.group.csv.Refactoring;
 import com.group.pojo.InfoCommit;
+import com.group.pojo.RefactoringRecord;
 import org.apache.log4j.Logger;
 import org.buildobjects.process.ProcBuilder;
-import org.buildobjects.process.ProcResult;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathSuffixFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
 import org.refactoringminer.api.*;
 import org.refactoringminer.rm1.GitHistoryRefactoringMinerImpl;
 import org.refactoringminer.util.GitServiceImpl;
 import com.group.pojo.Commit;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Predicate;
 
 public class RefactoringMinerWorker {
 
     private static final Logger logger = Logger.getLogger(RefactoringMinerWorker.class);
     private static final String REFACTORING_TYPE_FOUND_FILENAME = "refactoringFound.csv";
+    private static final String JAVA_EXTENSION = ".java";
+    private static final int DEFAULT_QUEUE_CAPACITY = 16;
+    private static final int MAX_MINING_CHUNK_SIZE = 32;
+    private static final String REMOTE_REFS_PREFIX = "refs/remotes/";
 
     private final GitService gitService = new GitServiceImpl();
     private final GitHistoryRefactoringMiner miner = new GitHistoryRefactoringMinerImpl();
     private final Repository repo;
     private final String resultsDir;
     private final boolean writeOutputOnFile;
+    private final RefactoringStore refactoringStore;
+    private final Map<String, String> checkedOutCommits = new ConcurrentHashMap<>();
+    private final Map<String, InfoCommit> informationCommits = new ConcurrentHashMap<>();
+    // files added by partial checkouts of each working tree since its last full checkout
+    private final Map<String, Set<String>> partiallyAddedPaths = new ConcurrentHashMap<>();
+    private Predicate<RefactoringType> refactoringFilter = type -> true;
+    private Metrics metrics = new Metrics();
 
     public RefactoringMinerWorker(String repoDir, String resultsDir, boolean writeOutputOnFile) throws Exception {
+        this(repoDir, resultsDir, writeOutputOnFile, null);
+    }
+
+    /**
+     * @param repoDir           directory of the repository
+     * @param resultsDir        directory of the results
+     * @param writeOutputOnFile if true write the refactorings found on file
+     * @param refactoringStore  store of the already mined commits, null to mine all the commits
+     */
+    public RefactoringMinerWorker(String repoDir, String resultsDir, boolean writeOutputOnFile,
+                                  RefactoringStore refactoringStore) throws Exception {
         repo = gitService.openRepository(repoDir);
         this.resultsDir = resultsDir;
         this.writeOutputOnFile = writeOutputOnFile;
+        this.refactoringStore = refactoringStore;
     }
 
     public RefactoringMinerWorker(String pathToDirectory, String repoUrl, String resultsDir, boolean writeOutputOnFile) throws Exception {
         repo = gitService.cloneIfNotExists(pathToDirectory, repoUrl);
         this.resultsDir = resultsDir;
         this.writeOutputOnFile = writeOutputOnFile;
+        this.refactoringStore = null;
+    }
+
+    /**
+     * @param refactoringFilter refactoring types to keep, commits without kept refactorings are not published
+     * @return this worker
+     */
+    public RefactoringMinerWorker withRefactoringFilter(Predicate<RefactoringType> refactoringFilter) {
+        this.refactoringFilter = refactoringFilter;
+        return this;
+    }
+
+    /**
+     * @param metrics metrics of the analysis using this worker
+     * @return this worker
+     */
+    public RefactoringMinerWorker withMetrics(Metrics metrics) {
+        this.metrics = metrics;
+        return this;
     }
 
     public ArrayList<Commit> getRefactoringsForCommits() throws Exception {
@@ -47,62 +115,384 @@ public class RefactoringMinerWorker {
     }
 
     public ArrayList<Commit> getRefactoringsForCommits(String branch) throws Exception {
-        logger.info("Run Refactoring Miner...");
-        ArrayList<Commit> commitArrayList = new ArrayList<>();
-        miner.detectAll(repo, branch, new RefactoringHandler() {
-            @Override
-            public void handle(String commitId, List<org.refactoringminer.api.Refactoring> refactorings) {
-                if (refactorings.size() > 0) {
-                    commitArrayList.add(new Commit(commitId, refactorings));
+        return toList(streamRefactoringsForCommits(branch, DEFAULT_QUEUE_CAPACITY));
+    }
+
+    public ArrayList<Commit> getRefactoringsForCommitsWithRange(String startCommitId, String endCommitId) throws Exception {
+        return toList(streamRefactoringsForCommitsWithRange(startCommitId, endCommitId, DEFAULT_QUEUE_CAPACITY));
+    }
+
+    /**
+     * Mine the refactorings of a branch on a background thread, commits can be consumed while mining
+     *
+     * @param branch        branch to analyze
+     * @param queueCapacity max number of mined commits waiting to be consumed
+     * @return the stream of the commits that contain refactorings
+     */
+    public CommitStream streamRefactoringsForCommits(String branch, int queueCapacity) {
+        return new CommitStream(queueCapacity).start("refactoring-miner", stream -> {
+            logger.info("Run Refactoring Miner...");
+            miner.detectAll(repo, branch, new CommitStreamHandler(stream));
+            logger.info("Refactoring Miner Done!");
+        });
+    }
+
+    /**
+     * Mine the refactorings between two commits on a background thread, commits can be consumed while mining
+     *
+     * @param startCommitId first commit
+     * @param endCommitId   last commit
+     * @param queueCapacity max number of mined commits waiting to be consumed
+     * @return the stream of the commits that contain refactorings
+     */
+    public CommitStream streamRefactoringsForCommitsWithRange(String startCommitId, String endCommitId, int queueCapacity) {
+        return new CommitStream(queueCapacity).start("refactoring-miner", stream -> {
+            logger.info("Run Refactoring Miner with detection between commits...");
+            miner.detectBetweenCommits(repo, startCommitId, endCommitId, new CommitStreamHandler(stream));
+            logger.info("Refactoring Miner Done!");
+        });
+    }
+
+    /**
+     * Mine the refactorings of a branch, running RefactoringMiner on more commits at the same time
+     *
+     * @param branch            branch to analyze
+     * @param queueCapacity     max number of mined commits waiting to be consumed
+     * @param miningParallelism number of commits mined at the same time (1 = RefactoringMiner history walk)
+     * @return the stream of the commits that contain refactorings, in the same order of RefactoringMiner
+     */
+    public CommitStream streamRefactoringsForCommits(String branch, int queueCapacity, int miningParallelism) {
+        if (miningParallelism <= 1) {
+            return streamRefactoringsForCommits(branch, queueCapacity);
+        }
+        return new CommitStream(queueCapacity).start("refactoring-miner", stream -> {
+            logger.info("Run Refactoring Miner on " + miningParallelism + " threads...");
+            detectInParallel(listBranchCommits(branch), miningParallelism, new CommitStreamHandler(stream));
+            logger.info("Refactoring Miner Done!");
+        });
+    }
+
+    /**
+     * Mine the refactorings between two commits, running RefactoringMiner on more commits at the same time
+     *
+     * @param startCommitId     first commit
+     * @param endCommitId       last commit
+     * @param queueCapacity     max number of mined commits waiting to be consumed
+     * @param miningParallelism number of commits mined at the same time (1 = RefactoringMiner history walk)
+     * @return the stream of the commits that contain refactorings, in the same order of RefactoringMiner
+     */
+    public CommitStream streamRefactoringsForCommitsWithRange(String startCommitId, String endCommitId,
+                                                              int queueCapacity, int miningParallelism) {
+        if (miningParallelism <= 1) {
+            return streamRefactoringsForCommitsWithRange(startCommitId, endCommitId, queueCapacity);
+        }
+        return new CommitStream(queueCapacity).start("refactoring-miner", stream -> {
+            logger.info("Run Refactoring Miner with detection between commits on " + miningParallelism + " threads...");
+            detectInParallel(listRangeCommits(startCommitId, endCommitId), miningParallelism,
+                    new CommitStreamHandler(stream));
+            logger.info("Refactoring Miner Done!");
+        });
+    }
+
+    /**
+     * List the commits of a branch as RefactoringMiner does: non merge commits reachable from the
+     * remote references of the branch, newest first. Local branch is used if there is no remote one.
+     */
+    private List<String> listBranchCommits(String branch) throws IOException {
+        try (RevWalk revWalk = new RevWalk(repo)) {
+            markBranchStart(revWalk, branch);
+            revWalk.setRevFilter(RevFilter.NO_MERGES);
+            List<String> commitIds = new ArrayList<>();
+            for (RevCommit commit : revWalk) {
+                commitIds.add(commit.getName());
+            }
+            return commitIds;
+        }
+    }
+
+    /**
+     * Start a walk from the remote references of a branch, or from the branch (or any revision) resolved locally
+     * if there is no remote one
+     *
+     * @throws IOException if the branch is not found
+     */
+    private void markBranchStart(RevWalk revWalk, String branch) throws IOException {
+        boolean remoteBranchFound = false;
+        for (Ref ref : repo.getRefDatabase().getRefs()) {
+            if (ref.getName().startsWith(REMOTE_REFS_PREFIX) && ref.getName().endsWith("/" + branch)) {
+                revWalk.markStart(revWalk.parseCommit(ref.getObjectId()));
+                remoteBranchFound = true;
+            }
+        }
+        if (!remoteBranchFound) {
+            ObjectId branchId = repo.resolve(branch);
+            if (branchId == null) {
+                throw new IOException("Branch " + branch + " not found");
+            }
+            revWalk.markStart(revWalk.parseCommit(branchId));
+        }
+    }
+
+    /**
+     * List the commits between two commits as RefactoringMiner does: commits with a single parent,
+     * oldest first
+     */
+    private List<String> listRangeCommits(String startCommitId, String endCommitId) throws IOException {
+        try (RevWalk revWalk = new RevWalk(repo)) {
+            revWalk.markStart(revWalk.parseCommit(repo.resolve(endCommitId)));
+            revWalk.markUninteresting(revWalk.parseCommit(repo.resolve(startCommitId)));
+            List<String> commitIds = new ArrayList<>();
+            for (RevCommit commit : revWalk) {
+                if (commit.getParentCount() == 1) {
+                    commitIds.add(commit.getName());
                 }
             }
-        });
-        logger.info("Refactoring Miner Done!");
-        if (this.writeOutputOnFile) {
-            parseCommitArrayListAndWriteOnFile(commitArrayList);
+            Collections.reverse(commitIds);
+            return commitIds;
         }
-        return commitArrayList;
     }
 
-    public ArrayList<Commit> getRefactoringsForCommitsWithRange(String startCommitId, String endCommitId) throws Exception {
-        logger.info("Run Refactoring Miner with detection between commits...");
-        ArrayList<Commit> commitArrayList = new ArrayList<>();
-        miner.detectBetweenCommits(repo, startCommitId, endCommitId, new RefactoringHandler() {
+    /**
+     * Split the commits in chunks mined on a ForkJoin pool, chunks are published in the order of the list
+     *
+     * @param commitIds         commits to mine
+     * @param miningParallelism number of threads of the pool
+     * @param handler           handler publishing the mined commits
+     */
+    private void detectInParallel(List<String> commitIds, int miningParallelism, CommitStreamHandler handler) throws Exception {
+        int chunkSize = Math.max(1, Math.min(MAX_MINING_CHUNK_SIZE,
+                (commitIds.size() + miningParallelism * 4 - 1) / (miningParallelism * 4)));
+        logger.info(commitIds.size() + " commits to mine in chunks of " + chunkSize);
+
+        ForkJoinPool pool = new ForkJoinPool(miningParallelism);
+        Deque<ForkJoinTask<List<Commit>>> pending = new ArrayDeque<>();
+        try {
+            for (int from = 0; from < commitIds.size() && !handler.isStopped(); from += chunkSize) {
+                List<String> chunk = commitIds.subList(from, Math.min(commitIds.size(), from + chunkSize));
+                pending.add(pool.submit(() -> detectChunk(chunk, handler)));
+                // limit chunks mined ahead of the oldest one not yet published
+                while (pending.size() >= miningParallelism * 2) {
+                    publishChunk(pending.poll(), handler);
+                }
+            }
+            while (!pending.isEmpty()) {
+                publishChunk(pending.poll(), handler);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void publishChunk(ForkJoinTask<List<Commit>> chunk, CommitStreamHandler handler) throws Exception {
+        try {
+            for (Commit commit : chunk.get()) {
+                handler.publish(commit);
+            }
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Mine a chunk of commits with its own RefactoringMiner instance
+     *
+     * @param commitIds commits of the chunk
+     * @param handler   handler of the stream, the remaining commits are skipped once it is stopped
+     * @return the commits of the chunk that contain refactorings
+     */
+    private List<Commit> detectChunk(List<String> commitIds, CommitStreamHandler handler) {
+        GitHistoryRefactoringMiner chunkMiner = new GitHistoryRefactoringMinerImpl();
+        List<Commit> commits = new ArrayList<>();
+        RefactoringHandler chunkHandler = new RefactoringHandler() {
             @Override
             public void handle(String commitId, List<org.refactoringminer.api.Refactoring> refactorings) {
-                if (refactorings.size() > 0) {
-                    commitArrayList.add(new Commit(commitId, refactorings));
+                List<RefactoringRecord> refactoringRecords = toRecords(commitId, refactorings);
+                if (refactoringRecords.size() > 0) {
+                    commits.add(new Commit(commitId, refactoringRecords));
                 }
             }
-        });
-        logger.info("Refactoring Miner Done!");
-        if (this.writeOutputOnFile) {
-            parseCommitArrayListAndWriteOnFile(commitArrayList);
+
+            @Override
+            public void handleException(String commitId, Exception e) {
+                logger.warn("Refactoring Miner failed on commit " + commitId, e);
+            }
+        };
+        for (String commitId : commitIds) {
+            if (handler.isStopped()) {
+                break;
+            }
+            List<RefactoringRecord> storedRecords = getStoredRecords(commitId);
+            if (storedRecords == null) {
+                try (Timer.Context ignored = metrics.time("refactoring-miner.commit")) {
+                    chunkMiner.detectAtCommit(repo, commitId, chunkHandler);
+                }
+            } else if (storedRecords.size() > 0) {
+                commits.add(new Commit(commitId, storedRecords));
+            }
+        }
+        return commits;
+    }
+
+    /**
+     * Convert the refactorings of a mined commit in compact records and save them in the store
+     *
+     * @param commitId     mined commit
+     * @param refactorings refactorings found by RefactoringMiner
+     * @return the compact records of the refactorings
+     */
+    private List<RefactoringRecord> toRecords(String commitId, List<org.refactoringminer.api.Refactoring> refactorings) {
+        // stored records keep the description, a later run may write the refactorings on file
+        boolean withDescription = writeOutputOnFile || refactoringStore != null;
+        metrics.increment("refactoring-miner.commits-mined");
+        metrics.add("refactoring-miner.refactorings", refactorings.size());
+        List<RefactoringRecord> refactoringRecords = new ArrayList<>(refactorings.size());
+        for (org.refactoringminer.api.Refactoring r : refactorings) {
+            // the store keeps all the refactorings, so the filter can change between runs,
+            // without a store the refactorings filtered out are not even converted
+            if (refactoringStore != null || refactoringFilter.test(r.getRefactoringType())) {
+                refactoringRecords.add(RefactoringRecord.of(r, withDescription));
+            }
+        }
+        if (refactoringStore != null) {
+            try {
+                refactoringStore.put(commitId, refactoringRecords);
+            } catch (IOException e) {
+                logger.error("Refactorings of commit " + commitId + " not saved in the store", e);
+            }
+            return getFilteredRecords(refactoringRecords);
+        }
+        countFiltered(refactorings.size(), refactoringRecords.size());
+        return refactoringRecords;
+    }
+
+    private List<RefactoringRecord> getFilteredRecords(List<RefactoringRecord> refactoringRecords) {
+        List<RefactoringRecord> filteredRecords = new ArrayList<>(refactoringRecords.size());
+        for (RefactoringRecord r : refactoringRecords) {
+            if (refactoringFilter.test(r.getRefactoringType())) {
+                filteredRecords.add(r);
+            }
+        }
+        countFiltered(refactoringRecords.size(), filteredRecords.size());
+        return filteredRecords;
+    }
+
+    private void countFiltered(int found, int kept) {
+        metrics.add("filters.refactorings-found", found);
+        metrics.add("filters.refactorings-kept", kept);
+        if (found > 0 && kept == 0) {
+            metrics.increment("filters.commits-dropped");
+        }
+    }
+
+    /**
+     * @param commitId commit to mine
+     * @return the refactorings of the commit if already mined in a previous run, null otherwise
+     */
+    private List<RefactoringRecord> getStoredRecords(String commitId) {
+        if (refactoringStore == null) {
+            return null;
+        }
+        try {
+            List<RefactoringRecord> storedRecords = refactoringStore.get(commitId);
+            if (storedRecords == null) {
+                return null;
+            }
+            metrics.increment("refactoring-miner.store-hits");
+            return getFilteredRecords(storedRecords);
+        } catch (IOException e) {
+            logger.warn("Refactorings of commit " + commitId + " not readable from the store, it will be mined again", e);
+            return null;
+        }
+    }
+
+    private static ArrayList<Commit> toList(CommitStream commitStream) throws Exception {
+        ArrayList<Commit> commitArrayList = new ArrayList<>();
+        try (CommitStream stream = commitStream) {
+            Commit commit;
+            while ((commit = stream.next()) != null) {
+                commitArrayList.add(commit);
+            }
         }
         return commitArrayList;
     }
 
-    public String checkoutPreviousCommit(String commitHashId) {
+    /**
+     * Converts the refactorings found by RefactoringMiner in compact records and publishes them on a stream
+     */
+    private class CommitStreamHandler extends RefactoringHandler {
 
-        logger.info("Commit Hash: " + commitHashId);
+        private final CommitStream stream;
+        private boolean firstCommit = true;
+        // commits are mined in a single history walk, each one is timed from the end of the previous one
+        private long lastCommitNanos = System.nanoTime();
 
-        ProcResult result = new ProcBuilder("git")
-                .withWorkingDirectory(new File(repo.getDirectory().getParent()))
-                .withArg("rev-list")
-                .withArg("--parents")
-                .withArg("-n")
-                .withArg("1")
-                .withArg(commitHashId)
-                .withNoTimeout()
-                .run();
+        private CommitStreamHandler(CommitStream stream) {
+            this.stream = stream;
+        }
+
+        /**
+         * @return true once the stream is closed, the remaining commits are not mined
+         */
+        private boolean isStopped() {
+            return stream.isClosed();
+        }
+
+        @Override
+        public boolean skipCommit(String commitId) {
+            if (isStopped()) {
+                return true;
+            }
+            List<RefactoringRecord> storedRecords = getStoredRecords(commitId);
+            if (storedRecords == null) {
+                return false;
+            }
+            if (storedRecords.size() > 0) {
+                publish(new Commit(commitId, storedRecords));
+            }
+            lastCommitNanos = System.nanoTime();
+            return true;
+        }
+
+        @Override
+        public void handle(String commitId, List<org.refactoringminer.api.Refactoring> refactorings) {
+            long now = System.nanoTime();
+            metrics.timer("refactoring-miner.commit").record(now - lastCommitNanos);
+            List<RefactoringRecord> refactoringRecords = toRecords(commitId, refactorings);
+            if (refactoringRecords.size() > 0) {
+                publish(new Commit(commitId, refactoringRecords));
+            }
+            lastCommitNanos = System.nanoTime();
+        }
+
+        private void publish(Commit commit) {
+            if (writeOutputOnFile) {
+                writeRefactoringsOnFile(commit, firstCommit);
+            }
+            firstCommit = false;
+            stream.publish(commit);
+        }
+    }
+
+    public String checkoutPreviousCommit(String commitHashId) throws IOException {
+        return checkoutPreviousCommit(commitHashId, repo.getDirectory().getParent());
+    }
+
+    /**
+     * Checkout the parent of the given commit in the specified working tree
+     *
+     * @param commitHashId commit whose parent has to be checked out
+     * @param workingDir   working tree in which run the checkout (main repository or a worktree)
+     * @return the hash of the previous commit (first parent), null if not found
+     * @throws IOException if the repository cannot be read or the working tree cannot be written
+     */
+    public String checkoutPreviousCommit(String commitHashId, String workingDir) throws IOException {
+
+        logger.info("Commit Hash: " + commitHashId);
 
-        Pattern pattern = Pattern.compile(" (.*)");
-        Matcher matcher = pattern.matcher(result.getOutputString().trim());
-        String previousCommit;
+        String previousCommit = getPreviousCommitHash(commitHashId);
 
-        if(matcher.find()) {
-            previousCommit = matcher.group(1);
-            checkoutToCommit(previousCommit);
+        if (previousCommit != null) {
+            checkoutToCommit(previousCommit, workingDir);
             return previousCommit;
         }
 
@@ -110,69 +500,344 @@ public class RefactoringMinerWorker {
         return null;
     }
 
-    public boolean checkoutToCommit(String commitHashId) {
-        ProcResult procResult = new ProcBuilder("git")
-                .withWorkingDirectory(new File(repo.getDirectory().getParent()))
-                .withArg("checkout")
-                .withArg("-f")
-                .withArg(commitHashId)
-                .withNoTimeout()
-                .run();
+    /**
+     * @param commitHashId commit to read
+     * @return the hash of the previous commit (first parent), null if the commit has no parents
+     * @throws IOException if the repository cannot be read
+     */
+    public String getPreviousCommitHash(String commitHashId) throws IOException {
+        try (RevWalk revWalk = new RevWalk(repo)) {
+            RevCommit commit = revWalk.parseCommit(repo.resolve(commitHashId));
+            return commit.getParentCount() > 0 ? commit.getParent(0).getName() : null;
+        }
+    }
+
+    /**
+     * @param workingDir working tree (main repository or a worktree)
+     * @return the commit last checked out in the working tree by this worker, null if unknown
+     */
+    public String getCheckedOutCommit(String workingDir) {
+        return checkedOutCommits.get(new File(workingDir).getAbsolutePath());
+    }
+
+    public boolean checkoutToCommit(String commitHashId) throws IOException {
+        return checkoutToCommit(commitHashId, repo.getDirectory().getParent());
+    }
+
+    /**
+     * Checkout the given commit in the specified working tree. The first checkout in a working tree is a
+     * full <code>git checkout -f</code>, the next ones only write and delete the files that differ from the
+     * commit checked out before, reading them with JGit. Partial checkouts do not move HEAD and index of the
+     * working tree, so the files they added are untracked for git: after a full checkout those not in the
+     * commit are deleted, while the other untracked and ignored files of the working tree are left as they are.
+     * If a checkout fails, the next one in the working tree is a full checkout.
+     *
+     * @param commitHashId commit to checkout
+     * @param workingDir   working tree in which run the checkout (main repository or a worktree)
+     * @return true when checkout is done
+     * @throws IOException if the repository cannot be read or the working tree cannot be written
+     */
+    public boolean checkoutToCommit(String commitHashId, String workingDir) throws IOException {
+        String workingDirKey = new File(workingDir).getAbsolutePath();
+        String checkedOutCommit = checkedOutCommits.get(workingDirKey);
+
+        if (commitHashId.equals(checkedOutCommit)) {
+            logger.info("Commit hash already checked out: " + commitHashId);
+            return true;
+        }
+
+        // the working tree is in an unknown state until the checkout is done
+        checkedOutCommits.remove(workingDirKey);
+        try (Timer.Context ignored = metrics.time("git.checkout")) {
+            if (checkedOutCommit == null || !checkoutChangedPaths(checkedOutCommit, commitHashId, workingDir)) {
+                metrics.fork("git");
+                new ProcBuilder("git")
+                        .withWorkingDirectory(new File(workingDir))
+                        .withArg("checkout")
+                        .withArg("-f")
+                        .withArg(commitHashId)
+                        .withNoTimeout()
+                        .run();
+                deletePartiallyAddedPaths(commitHashId, workingDir);
+            } else {
+                metrics.increment("git.partial-checkouts");
+            }
+        }
+        checkedOutCommits.put(workingDirKey, commitHashId);
 
         logger.info("Checkout to commit hash: " + commitHashId);
         return true;
     }
 
-    public InfoCommit getInformationCommit(String commitHashId) {
-        ProcResult procResult = new ProcBuilder("git")
+    /**
+     * Update a working tree from a commit to another one, writing only the files that differ
+     *
+     * @return false if the diff contains entries that cannot be written as plain files (e.g. symlinks),
+     * in that case nothing is written
+     */
+    private boolean checkoutChangedPaths(String fromCommitHashId, String toCommitHashId, String workingDir) throws IOException {
+        List<String> deletedPaths = new ArrayList<>();
+        List<String> writtenPaths = new ArrayList<>();
+        List<ObjectId> writtenBlobs = new ArrayList<>();
+        List<Boolean> executables = new ArrayList<>();
+        List<String> addedPaths = new ArrayList<>();
+
+        try (RevWalk revWalk = new RevWalk(repo); TreeWalk treeWalk = new TreeWalk(repo)) {
+            treeWalk.addTree(revWalk.parseCommit(repo.resolve(fromCommitHashId)).getTree());
+            treeWalk.addTree(revWalk.parseCommit(repo.resolve(toCommitHashId)).getTree());
+            treeWalk.setRecursive(true);
+            treeWalk.setFilter(TreeFilter.ANY_DIFF);
+            while (treeWalk.next()) {
+                FileMode mode = treeWalk.getFileMode(1);
+                if (mode == FileMode.MISSING) {
+                    deletedPaths.add(treeWalk.getPathString());
+                } else if (mode == FileMode.REGULAR_FILE || mode == FileMode.EXECUTABLE_FILE) {
+                    writtenPaths.add(treeWalk.getPathString());
+                    writtenBlobs.add(treeWalk.getObjectId(1));
+                    executables.add(mode == FileMode.EXECUTABLE_FILE);
+                    if (treeWalk.getFileMode(0) == FileMode.MISSING) {
+                        addedPaths.add(treeWalk.getPathString());
+                    }
+                } else if (mode != FileMode.GITLINK) {
+                    return false;
+                }
+            }
+        }
+
+        File root = new File(workingDir).getAbsoluteFile();
+        // recorded before writing, so a checkout failing halfway is cleaned by the next full checkout
+        partiallyAddedPaths.computeIfAbsent(root.getPath(), k -> ConcurrentHashMap.newKeySet()).addAll(addedPaths);
+        for (String path : deletedPaths) {
+            deleteFile(root, path);
+        }
+        for (int i = 0; i < writtenPaths.size(); i++) {
+            File file = new File(workingDir, writtenPaths.get(i));
+            file.getParentFile().mkdirs();
+            try (OutputStream out = new FileOutputStream(file)) {
+                repo.open(writtenBlobs.get(i)).copyTo(out);
+            }
+            if (executables.get(i)) {
+                file.setExecutable(true);
+            }
+        }
+        logger.info("Partial checkout: " + writtenPaths.size() + " files written, " + deletedPaths.size() + " deleted");
+        return true;
+    }
+
+    /**
+     * Delete the files added by partial checkouts in a working tree that are not in the commit fully checked out
+     */
+    private void deletePartiallyAddedPaths(String commitHashId, String workingDir) throws IOException {
+        File root = new File(workingDir).getAbsoluteFile();
+        Set<String> addedPaths = partiallyAddedPaths.remove(root.getPath());
+        if (addedPaths == null || addedPaths.isEmpty())
+            return;
+        int deleted = 0;
+        try (RevWalk revWalk = new RevWalk(repo)) {
+            RevCommit commit = revWalk.parseCommit(repo.resolve(commitHashId));
+            for (String path : addedPaths) {
+                try (TreeWalk treeWalk = TreeWalk.forPath(repo, path, commit.getTree())) {
+                    if (treeWalk == null) {
+                        deleteFile(root, path);
+                        deleted++;
+                    }
+                }
+            }
+        }
+        logger.info(deleted + " files of partial checkouts deleted");
+    }
+
+    /**
+     * Delete a file of a working tree and the directories left empty, as git does
+     */
+    private static void deleteFile(File root, String path) {
+        File file = new File(root, path);
+        file.delete();
+        File parent = file.getParentFile();
+        while (parent != null && !parent.equals(root) && parent.delete()) {
+            parent = parent.getParentFile();
+        }
+    }
+
+    /**
+     * Create a detached git worktree of the repository, so that commits can be checked out
+     * there without touching the main working tree. A stale worktree on the same path is removed first.
+     *
+     * @param worktreeDir absolute path of the worktree to create
+     */
+    public void addWorktree(String worktreeDir) {
+        removeWorktree(worktreeDir);
+        metrics.fork("git");
+        new ProcBuilder("git")
                 .withWorkingDirectory(new File(repo.getDirectory().getParent()))
-                .withArg("log")
-                .withArg("--pretty=format:\"Commit:%n%H%n%cn%n%ce\"")
-                .withArg(commitHashId)
+                .withArg("worktree")
+                .withArg("add")
+                .withArg("--detach")
+                .withArg(worktreeDir)
                 .withNoTimeout()
                 .run();
+        logger.info("Worktree created: " + worktreeDir);
+    }
 
+    /**
+     * Remove a worktree created with {@link #addWorktree(String)}, deleting its directory
+     *
+     * @param worktreeDir absolute path of the worktree to remove
+     */
+    public void removeWorktree(String worktreeDir) {
+        File repoWorkingDir = new File(repo.getDirectory().getParent());
+        metrics.fork("git");
+        new ProcBuilder("git")
+                .withWorkingDirectory(repoWorkingDir)
+                .withArg("worktree")
+                .withArg("remove")
+                .withArg("--force")
+                .withArg(worktreeDir)
+                .withNoTimeout()
+                .ignoreExitStatus()
+                .run();
+        Utils.deleteDirectory(new File(worktreeDir));
+        checkedOutCommits.remove(new File(worktreeDir).getAbsolutePath());
+        metrics.fork("git");
+        new ProcBuilder("git")
+                .withWorkingDirectory(repoWorkingDir)
+                .withArg("worktree")
+                .withArg("prune")
+                .withNoTimeout()
+                .ignoreExitStatus()
+                .run();
+    }
 
-        return parseInfoCommit(procResult);
+    /**
+     * Get the hash of the tree of a commit: commits with the same tree have the same content
+     *
+     * @param commitHashId commit hash
+     * @return the tree hash
+     * @throws IOException if the commit cannot be read from the repository
+     */
+    public String getTreeHash(String commitHashId) throws IOException {
+        try (RevWalk revWalk = new RevWalk(repo)) {
+            return revWalk.parseCommit(repo.resolve(commitHashId)).getTree().getName();
+        }
     }
 
-    private static InfoCommit parseInfoCommit(ProcResult procResult) {
-        InfoCommit infoCommit = null;
+    /**
+     * Get the directories that contain java files changed between two commits
+     *
+     * @param previousCommitHashId previous commit hash
+     * @param commitHashId         commit hash
+     * @return relative paths of the directories with added, modified or deleted java files
+     * @throws IOException if commits cannot be read from the repository
+     */
+    public Set<String> getChangedJavaDirectories(String previousCommitHashId, String commitHashId) throws IOException {
+        Set<String> directories = new HashSet<>();
+        try (RevWalk revWalk = new RevWalk(repo); TreeWalk treeWalk = new TreeWalk(repo)) {
+            treeWalk.addTree(revWalk.parseCommit(repo.resolve(previousCommitHashId)).getTree());
+            treeWalk.addTree(revWalk.parseCommit(repo.resolve(commitHashId)).getTree());
+            treeWalk.setRecursive(true);
+            treeWalk.setFilter(AndTreeFilter.create(TreeFilter.ANY_DIFF, PathSuffixFilter.create(JAVA_EXTENSION)));
+            while (treeWalk.next()) {
+                directories.add(getParentDirectory(treeWalk.getPathString()));
+            }
+        }
+        return directories;
+    }
 
-        String[] results =  procResult.getOutputString() != null ? procResult.getOutputString().split("\n") : null;
-        if (results != null && results.length > 3) {
-            infoCommit = new InfoCommit(results[1], results[2], results[3]);
+    /**
+     * Write the java files of a commit contained in the given directories (not in their subdirectories),
+     * reading them from the repository without any checkout
+     *
+     * @param commitHashId commit hash
+     * @param directories  relative paths of the directories to export
+     * @param targetDir    absolute path where files are written, keeping their relative path
+     * @throws IOException if files cannot be read or written
+     */
+    public void exportJavaDirectories(String commitHashId, Set<String> directories, String targetDir) throws IOException {
+        try (RevWalk revWalk = new RevWalk(repo); TreeWalk treeWalk = new TreeWalk(repo)) {
+            treeWalk.addTree(revWalk.parseCommit(repo.resolve(commitHashId)).getTree());
+            treeWalk.setRecursive(true);
+            treeWalk.setFilter(PathSuffixFilter.create(JAVA_EXTENSION));
+            while (treeWalk.next()) {
+                String path = treeWalk.getPathString();
+                if (directories.contains(getParentDirectory(path))) {
+                    File file = new File(targetDir, path);
+                    file.getParentFile().mkdirs();
+                    try (OutputStream out = new FileOutputStream(file)) {
+                        repo.open(treeWalk.getObjectId(0)).copyTo(out);
+                    }
+                }
+            }
         }
+    }
 
-        return infoCommit;
+    private static String getParentDirectory(String path) {
+        int lastSlash = path.lastIndexOf('/');
+        return lastSlash < 0 ? "" : path.substring(0, lastSlash);
     }
 
-    private void parseCommitArrayListAndWriteOnFile(List<Commit> commitList) {
-        logger.info("Generating " + REFACTORING_TYPE_FOUND_FILENAME);
-        List<Refactoring> refactoringList = new ArrayList<Refactoring>();
-        for (Commit c : commitList) {
-            for (org.refactoringminer.api.Refactoring r : c.getRefactoringList()) {
-                refactoringList.add(
-                        new Refactoring(
-                                c.getHash(),
-                                r.getRefactoringType().getDisplayName(),
-                                r.toString().replace('\t', ' '))
-                );
+    /**
+     * Read with a single history walk the committer of all the commits reachable from the given end commit
+     * (and not from the start one), so that {@link #getInformationCommit(String)} does not touch the repository
+     *
+     * @param startCommitId commit whose ancestors are excluded, null to walk the whole history
+     * @param endCommitId   commit, branch or reference from which the walk starts, a branch is resolved
+     *                      as for mining (remote references first)
+     * @throws IOException if the history cannot be read or the end commit is not found
+     */
+    public void preloadInformationCommits(String startCommitId, String endCommitId) throws IOException {
+        try (RevWalk revWalk = new RevWalk(repo)) {
+            markBranchStart(revWalk, endCommitId);
+            if (startCommitId != null) {
+                revWalk.markUninteresting(revWalk.parseCommit(repo.resolve(startCommitId)));
+            }
+            for (RevCommit commit : revWalk) {
+                informationCommits.put(commit.getName(), toInfoCommit(commit));
             }
         }
-        CSVService.writeCsvFile(
-                Utils.preparePathOsBased(false, resultsDir, REFACTORING_TYPE_FOUND_FILENAME),
-                refactoringList,
-                Refactoring.class);
+        logger.info("Information loaded for " + informationCommits.size() + " commits");
     }
 
-    private List<org.refactoringminer.api.Refactoring> getFilteredRefactorings(List<org.refactoringminer.api.Refactoring> refactorings) {
-        List<org.refactoringminer.api.Refactoring> refactoringList = new ArrayList<>();
-        for (org.refactoringminer.api.Refactoring r : refactorings) {
-            if (Utils.refactoringsConsidered.containsKey(r.getRefactoringType())) {
-                refactoringList.add(r);
+    public InfoCommit getInformationCommit(String commitHashId) throws IOException {
+        InfoCommit infoCommit = informationCommits.get(commitHashId);
+        if (infoCommit == null) {
+            try (RevWalk revWalk = new RevWalk(repo)) {
+                infoCommit = toInfoCommit(revWalk.parseCommit(repo.resolve(commitHashId)));
             }
+            informationCommits.put(commitHashId, infoCommit);
         }
-        return refactoringList;
+        return infoCommit;
+    }
+
+    private static InfoCommit toInfoCommit(RevCommit commit) {
+        PersonIdent committer = commit.getCommitterIdent();
+        return new InfoCommit(commit.getName(), committer.getName(), committer.getEmailAddress());
+    }
+
+    /**
+     * Write the refactorings of a commit on file, the first commit creates the file with the header
+     *
+     * @param commit      commit with refactorings
+     * @param firstCommit true if this is the first commit written
+     */
+    private void writeRefactoringsOnFile(Commit commit, boolean firstCommit) {
+        if (firstCommit) {
+            logger.info("Generating " + REFACTORING_TYPE_FOUND_FILENAME);
+        }
+        List<Refactoring> refactoringList = new ArrayList<Refactoring>();
+        for (RefactoringRecord r : commit.getRefactoringList()) {
+            refactoringList.add(
+                    new Refactoring(
+                            commit.getHash(),
+                            r.getRefactoringType().getDisplayName(),
+                            r.getDescription())
+            );
+        }
+        CSVService.writeCsvFileWithStrategy(
+                Utils.preparePathOsBased(false, resultsDir, REFACTORING_TYPE_FOUND_FILENAME),
+                refactoringList,
+                Refactoring.class,
+                firstCommit,
+                !firstCommit,
+                metrics);
     }
 }
\ No newline at end of file
@@ -0,0 +1,138 @@
+package com.group.worker;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of working trees where commits are checked out (materialized). The manager knows which commit is
+ * materialized in each tree: a tree is lent preferring the one that already holds the wanted snapshot,
+ * and materializing a commit already checked out in the tree costs nothing.
+ */
+public class SnapshotManager {
+
+    private final Checkouts checkouts;
+    // free trees, the least recently released first
+    private final List<String> freeTrees = new ArrayList<>();
+    private final AtomicInteger checkoutCount = new AtomicInteger();
+    private final AtomicInteger reuses = new AtomicInteger();
+
+    /**
+     * @param refactoringMinerWorker worker used for checkouts
+     */
+    public SnapshotManager(RefactoringMinerWorker refactoringMinerWorker) {
+        this(new Checkouts() {
+            @Override
+            public String getCheckedOutCommit(String workingDir) {
+                return refactoringMinerWorker.getCheckedOutCommit(workingDir);
+            }
+
+            @Override
+            public void checkout(String commitHashId, String workingDir) throws IOException {
+                refactoringMinerWorker.checkoutToCommit(commitHashId, workingDir);
+            }
+        });
+    }
+
+    SnapshotManager(Checkouts checkouts) {
+        this.checkouts = checkouts;
+    }
+
+    /**
+     * Order in which the two snapshots of a commit are materialized in a working tree, so that the tree is left
+     * on the snapshot the next commit needs: the previous commit when commits are mined newest first (it is the
+     * next commit), the commit itself when they are mined oldest first (it is the previous commit of the next one)
+     *
+     * @param commitHashId         commit
+     * @param previousCommitHashId previous commit (first parent)
+     * @param newestFirst          true if commits are mined newest first, as for a branch
+     * @return the two commits, in materialization order
+     */
+    public static String[] materializationOrder(String commitHashId, String previousCommitHashId,
+                                                boolean newestFirst) {
+        return newestFirst ? new String[]{commitHashId, previousCommitHashId}
+                : new String[]{previousCommitHashId, commitHashId};
+    }
+
+    /**
+     * @param workingDir working tree (main repository or a worktree) to lend
+     */
+    public synchronized void addWorkingTree(String workingDir) {
+        freeTrees.add(workingDir);
+        notifyAll();
+    }
+
+    /**
+     * Take a free working tree, waiting if all trees are in use. The tree must be given back with
+     * {@link #release(String)}.
+     *
+     * @param wantedCommits commits in order of preference, a tree where one of them is materialized is lent first
+     * @return the working tree, otherwise the least recently used one
+     * @throws InterruptedException if interrupted while waiting a tree
+     */
+    public synchronized String acquire(String... wantedCommits) throws InterruptedException {
+        while (freeTrees.isEmpty()) {
+            wait();
+        }
+        for (String commit : wantedCommits) {
+            if (commit == null)
+                continue;
+            for (int i = 0; i < freeTrees.size(); i++) {
+                if (commit.equals(getMaterializedCommit(freeTrees.get(i)))) {
+                    return freeTrees.remove(i);
+                }
+            }
+        }
+        return freeTrees.remove(0);
+    }
+
+    /**
+     * @param workingDir working tree taken with {@link #acquire(String...)}
+     */
+    public synchronized void release(String workingDir) {
+        freeTrees.add(workingDir);
+        notifyAll();
+    }
+
+    /**
+     * @param workingDir working tree
+     * @return the commit materialized in the tree, null if unknown
+     */
+    public String getMaterializedCommit(String workingDir) {
+        return checkouts.getCheckedOutCommit(workingDir);
+    }
+
+    /**
+     * Checkout a commit in a working tree, unless it is already materialized there
+     *
+     * @param workingDir   working tree owned by the caller
+     * @param commitHashId commit to materialize
+     * @throws IOException if the working tree cannot be written
+     */
+    public void materialize(String workingDir, String commitHashId) throws IOException {
+        if (commitHashId.equals(getMaterializedCommit(workingDir))) {
+            reuses.incrementAndGet();
+            return;
+        }
+        checkoutCount.incrementAndGet();
+        checkouts.checkout(commitHashId, workingDir);
+    }
+
+    public int getCheckouts() {
+        return checkoutCount.get();
+    }
+
+    public int getReuses() {
+        return reuses.get();
+    }
+
+    /**
+     * Checkouts of commits in working trees
+     */
+    interface Checkouts {
+        String getCheckedOutCommit(String workingDir);
+
+        void checkout(String commitHashId, String workingDir) throws IOException;
+    }
+}
@@ -1,38 +1,60 @@
 package com.group.worker;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.util.Objects;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 import com.group.Utils;
+import com.group.metrics.Metrics;
+import com.group.metrics.Timer;
 import com.group.pojo.sonar.Component;
+import com.group.pojo.sonar.DebtIndex;
 import com.group.pojo.sonar.Measure;
+import com.group.pojo.sonar.Paging;
 import org.apache.log4j.Logger;
 import org.buildobjects.process.ProcBuilder;
 
-import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
 import com.group.pojo.sonar.Analysis;
 
-public class SonarQubeWorker {
+public class SonarQubeWorker implements Closeable {
 
 	private static final Logger logger = Logger.getLogger(SonarQubeWorker.class);
 
 	private static final String USER_AGENT = "Mozilla/5.0";
 
 	private static final String COMPONENT_TREE_API = "/api/measures/component_tree?component=";
-	private static final String PARAMETERS = "&metricKeys=sqale_index&qualifiers=FIL&ps=500&pageIndex=";
+	private static final String PAGED_PARAMETERS = "&metricKeys=" + DebtIndex.TD_METRIC + "&qualifiers=FIL&ps=500&p=";
+	// component_tree returns at most the first 10,000 components of a project
+	static final int MAX_COMPONENTS = 10_000;
+	private static final int DEFAULT_HTTP_CONCURRENCY = 4;
 
 	private String baseUrl;
 	private String sonarScannerDir;
 	private String repoDir;
 	private String relativeSrcPath;
 	private String project;
+	private final int httpConcurrency;
+	// pool of the page requests, created on first use unless shared by the owner of the worker
+	private ExecutorService httpExecutor;
+	private boolean ownHttpExecutor;
+	private Semaphore scanPermits;
+	private Metrics metrics = new Metrics();
 
 	/**
 	 * Start SonarQube worker for scanning repository checkout to analyze
@@ -42,63 +64,305 @@ public class SonarQubeWorker {
 	 * @param  repoDir absolute path of the directory that contains the repository to be analyzed
 	 */
 	public SonarQubeWorker(String sonarQubeServerBaseUrl, String sonarScannerDir, String repoDir, String relativeSrcPath) {
+		this(sonarQubeServerBaseUrl, sonarScannerDir, repoDir, relativeSrcPath, DEFAULT_HTTP_CONCURRENCY);
+	}
+
+	/**
+	 * Start SonarQube worker for scanning repository checkout to analyze
+	 *
+	 * @param  sonarQubeServerBaseUrl  SonarQube Server base url
+	 * @param  sonarScannerDir absolute path of the directory that contains bins of SonarQube Scanner
+	 * @param  repoDir absolute path of the directory that contains the repository to be analyzed
+	 * @param  httpConcurrency max number of analysis pages requested at the same time
+	 */
+	public SonarQubeWorker(String sonarQubeServerBaseUrl, String sonarScannerDir, String repoDir, String relativeSrcPath,
+						   int httpConcurrency) {
 		this.baseUrl = sonarQubeServerBaseUrl;
 		this.sonarScannerDir = sonarScannerDir;
 		this.repoDir = repoDir;
 		this.relativeSrcPath = relativeSrcPath;
 		this.project = Utils.getProjectNameFromRepoDir(this.repoDir);
+		this.httpConcurrency = Math.max(1, httpConcurrency);
 	}
 
 	/**
-	 * Start SonarQube worker for scanning repository checkout to analyze
+	 * @param  httpExecutor pool of the page requests shared with other workers, shut down by its owner
+	 * @return this worker
+	 */
+	public synchronized SonarQubeWorker withHttpExecutor(ExecutorService httpExecutor) {
+		if (ownHttpExecutor)
+			this.httpExecutor.shutdownNow();
+		this.httpExecutor = httpExecutor;
+		this.ownHttpExecutor = false;
+		return this;
+	}
+
+	/**
+	 * @param  httpConcurrency max number of page requests at the same time
+	 * @return a pool of daemon threads for page requests
+	 */
+	public static ExecutorService newHttpExecutor(int httpConcurrency) {
+		return Executors.newFixedThreadPool(Math.max(1, httpConcurrency), r -> {
+			Thread thread = new Thread(r, "sonarqube-http");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	private synchronized ExecutorService getHttpExecutor() {
+		if (httpExecutor == null) {
+			httpExecutor = newHttpExecutor(httpConcurrency);
+			ownHttpExecutor = true;
+		}
+		return httpExecutor;
+	}
+
+	/**
+	 * @param  commitHash  commit of the analysis
+	 * @return  key of the SonarQube project of the commit analysis (project name + commit hash)
+	 */
+	public String getProjectKey(String commitHash) {
+		return this.project.concat("_").concat(commitHash);
+	}
+
+	public String getRelativeSrcPath() {
+		return relativeSrcPath;
+	}
+
+	/**
+	 * Shut down the pool of the page requests, if created by this worker
+	 */
+	@Override
+	public synchronized void close() {
+		if (ownHttpExecutor) {
+			httpExecutor.shutdownNow();
+			httpExecutor = null;
+			ownHttpExecutor = false;
+		}
+	}
+
+	/**
+	 * @param  scanPermits permits shared with other workers, one is held by each run of Sonar Scanner
+	 * @return this worker
+	 */
+	public SonarQubeWorker withScanPermits(Semaphore scanPermits) {
+		this.scanPermits = scanPermits;
+		return this;
+	}
+
+	/**
+	 * @param  metrics metrics of the analysis using this worker
+	 * @return this worker
+	 */
+	public SonarQubeWorker withMetrics(Metrics metrics) {
+		this.metrics = metrics;
+		return this;
+	}
+
+	/**
+	 * Get the technical debt of every file of a commit analysis, indexed by class path.
+	 * The first page of the component tree tells how many files there are, the remaining pages
+	 * are fetched concurrently and each response is parsed as a stream straight into the index.
 	 *
 	 * @param  commitHash  checkout commit to analyze
-	 * @throws  IOException
-	 * @return  a analysis object for specific commit
+	 * @throws  IOException if a page cannot be retrieved, or the project has more files than the
+	 *          {@value #MAX_COMPONENTS} returned by the component tree
+	 * @return  an immutable debt index, reusable for all the results of the commit
 	 */
-	public Analysis getAnalysisFor(String commitHash) throws IOException {
-		// concat project name with relative hash
-		String projectSonar = this.project.concat("_").concat(commitHash);
+	public DebtIndex getDebtIndexFor(String commitHash) throws IOException {
+		String projectSonar = getProjectKey(commitHash);
+
+		DebtIndex.Builder builder = new DebtIndex.Builder();
+		Paging paging = fetchDebtPage(projectSonar, 1, builder);
+		if (paging != null && paging.getTotal() > MAX_COMPONENTS) {
+			throw new IOException("Component tree of " + projectSonar + " has " + paging.getTotal()
+					+ " files, SonarQube returns only the first " + MAX_COMPONENTS);
+		}
+		int pages = paging == null || paging.getPageSize() <= 0 ? 1
+				: (paging.getTotal() + paging.getPageSize() - 1) / paging.getPageSize();
 
-		return new Gson().fromJson(Objects.requireNonNull(httpGetRequest(projectSonar)).toString(), Analysis.class);
+		if (pages > 1) {
+			logger.info("Fetching " + (pages - 1) + " more pages for " + projectSonar);
+			List<Future<DebtIndex.Builder>> pageBuilders = new ArrayList<>();
+			ExecutorService httpExecutor = getHttpExecutor();
+			for (int page = 2; page <= pages; page++) {
+				final int pageIndex = page;
+				pageBuilders.add(httpExecutor.submit(() -> {
+					DebtIndex.Builder pageBuilder = new DebtIndex.Builder();
+					fetchDebtPage(projectSonar, pageIndex, pageBuilder);
+					return pageBuilder;
+				}));
+			}
+			// merge in page order, so the first value of a class path wins as in a sequential read
+			for (Future<DebtIndex.Builder> pageBuilder : pageBuilders) {
+				builder.addAll(getPage(pageBuilder));
+			}
+		}
+		return builder.build();
+	}
 
+	private static DebtIndex.Builder getPage(Future<DebtIndex.Builder> pageBuilder) throws IOException {
+		try {
+			return pageBuilder.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while fetching SonarQube pages");
+		} catch (ExecutionException e) {
+			throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+		}
 	}
 
 	/**
-	 * Building a GET request for get Sonar Scanner analysis from Sonar Server
+	 * Request a page of the component tree and parse it as a stream. The response is fully read and closed,
+	 * so the connection goes back to the keep-alive cache and is reused by the next request.
 	 *
 	 * @param  projectSonar  project name
-	 * @throws  IOException
-	 * @return  a buffer that contains HTTP response
+	 * @param  page  page index, starting from 1
+	 * @param  builder  debt index to fill with the components of the page
+	 * @throws  IOException if the request fails
+	 * @return  paging of the component tree
 	 */
-	private StringBuffer httpGetRequest(String projectSonar) throws IOException {
-		String requestUrl = this.baseUrl + COMPONENT_TREE_API + projectSonar + PARAMETERS;
+	private Paging fetchDebtPage(String projectSonar, int page, DebtIndex.Builder builder) throws IOException {
+		String requestUrl = this.baseUrl + COMPONENT_TREE_API + projectSonar + PAGED_PARAMETERS + page;
 		logger.info("GET request: " + requestUrl);
-		// URL for SonarQube server
-		URL obj = new URL(requestUrl);
-		// HTTP message composition
-		HttpURLConnection con = (HttpURLConnection) obj.openConnection();
+		metrics.increment("sonarqube.pages");
+		try (Timer.Context ignored = metrics.time("sonarqube.http")) {
+			return requestDebtPage(requestUrl, projectSonar, page, builder);
+		}
+	}
+
+	private Paging requestDebtPage(String requestUrl, String projectSonar, int page, DebtIndex.Builder builder)
+			throws IOException {
+		HttpURLConnection con = (HttpURLConnection) new URL(requestUrl).openConnection();
 		con.setRequestMethod("GET");
 		con.setRequestProperty("User-Agent", USER_AGENT);
 		int responseCode = con.getResponseCode();
-		logger.info("GET Response Code : " + responseCode + " for " + projectSonar);
 
-		if (responseCode == HttpURLConnection.HTTP_OK) { // success HTTP request
-			BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()));
-			String inputLine;
-			StringBuffer response = new StringBuffer();
+		if (responseCode != HttpURLConnection.HTTP_OK) {
+			InputStream error = con.getErrorStream();
+			if (error != null) {
+				drain(error);
+			}
+			throw new IOException("GET request not worked for " + projectSonar + " page " + page
+					+ ", response code " + responseCode);
+		}
+
+		try (InputStream in = con.getInputStream()) {
+			Paging paging = parseDebtPage(new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8)), builder);
+			drain(in);
+			return paging;
+		}
+	}
+
+	private static void drain(InputStream in) throws IOException {
+		byte[] buffer = new byte[8192];
+		while (in.read(buffer) != -1) {
+			// discard
+		}
+		in.close();
+	}
 
-			while ((inputLine = in.readLine()) != null) {
-				response.append(inputLine);
+	/**
+	 * Parse a component tree response, adding the sqale_index of each component to the builder
+	 *
+	 * @param  reader  reader of the response
+	 * @param  builder  debt index to fill
+	 * @throws  IOException if the response is malformed
+	 * @return  paging of the response, null if missing
+	 */
+	private static Paging parseDebtPage(JsonReader reader, DebtIndex.Builder builder) throws IOException {
+		Paging paging = null;
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+				case "paging":
+					paging = parsePaging(reader);
+					break;
+				case "components":
+					reader.beginArray();
+					while (reader.hasNext()) {
+						parseComponent(reader, builder);
+					}
+					reader.endArray();
+					break;
+				default:
+					reader.skipValue();
+			}
+		}
+		reader.endObject();
+		return paging;
+	}
+
+	private static Paging parsePaging(JsonReader reader) throws IOException {
+		int pageIndex = 0, pageSize = 0, total = 0;
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+				case "pageIndex":
+					pageIndex = reader.nextInt();
+					break;
+				case "pageSize":
+					pageSize = reader.nextInt();
+					break;
+				case "total":
+					total = reader.nextInt();
+					break;
+				default:
+					reader.skipValue();
+			}
+		}
+		reader.endObject();
+		return new Paging(pageIndex, pageSize, total);
+	}
+
+	private static void parseComponent(JsonReader reader, DebtIndex.Builder builder) throws IOException {
+		String path = null;
+		Integer debt = null;
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+				case "path":
+					path = reader.nextString();
+					break;
+				case "measures":
+					reader.beginArray();
+					while (reader.hasNext()) {
+						Integer value = parseDebtMeasure(reader);
+						if (debt == null) {
+							debt = value;
+						}
+					}
+					reader.endArray();
+					break;
+				default:
+					reader.skipValue();
 			}
-			in.close();
+		}
+		reader.endObject();
+		if (path != null && debt != null) {
+			builder.add(path, debt);
+		}
+	}
 
-			return response;
-		} else {
-			logger.info("GET request not worked for " + projectSonar);
+	private static Integer parseDebtMeasure(JsonReader reader) throws IOException {
+		String metric = null, value = null;
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+				case "metric":
+					metric = reader.nextString();
+					break;
+				case "value":
+					value = reader.nextString();
+					break;
+				default:
+					reader.skipValue();
+			}
 		}
-		return null;
+		reader.endObject();
+		return DebtIndex.TD_METRIC.equals(metric) && value != null ? Integer.valueOf(value) : null;
 	}
+
 	/**
 	 * Scanning a repository checkout throught Sonar Scanner
 	 *
@@ -116,10 +380,22 @@ public class SonarQubeWorker {
 		if (Utils.isWindowsSystem) {
 			procBuilder.withArg("/c");
 		}
-		procBuilder
-				.withArg(Utils.preparePathOsBased(false, this.sonarScannerDir, sonarScannerScriptFilename))
-				.withNoTimeout()
-				.run();
+		if (scanPermits != null) {
+			try (Timer.Context ignored = metrics.time("sonarqube.permit-wait")) {
+				scanPermits.acquireUninterruptibly();
+			}
+		}
+		metrics.fork("sonar-scanner");
+		try (Timer.Context ignored = metrics.time("sonarqube.scan")) {
+			procBuilder
+					.withArg(Utils.preparePathOsBased(false, this.sonarScannerDir, sonarScannerScriptFilename))
+					.withNoTimeout()
+					.run();
+		} finally {
+			if (scanPermits != null) {
+				scanPermits.release();
+			}
+		}
 		logger.info("Sonar Scanner Done!");
 	}
 
@@ -135,7 +411,7 @@ public class SonarQubeWorker {
 			for (Component c : analysis.getComponents()) {
 				if (Utils.getPackagesWithClassPath(c.getPath()).equals(classPath)) {
 					for (Measure m : c.getMeasures()) {
-						if (m.getMetric().equals("sqale_index")) {
+						if (m.getMetric().equals(DebtIndex.TD_METRIC)) {
 							return Integer.parseInt(m.getValue());
 						}
 					}
@@ -0,0 +1,214 @@
+package com.group.worker;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.group.Utils;
+import com.group.pojo.sonar.DebtIndex;
+import org.apache.log4j.Logger;
+
+/**
+ * Registry of the commit snapshots already scanned and sent to SonarQube Server.
+ * In a linear history the current commit of a step is the previous commit of the next one, so its
+ * scan and its debt index are reused. Scanned commits are saved in the results folder and survive restarts,
+ * keyed by SonarQube project key and sources path; a commit scanned by a previous run whose analysis is empty
+ * on the server (e.g. the project was deleted) is scanned again.
+ * Optionally, scans can be scheduled ahead on a background thread, so they overlap with Designite.
+ */
+public class SonarScanRegistry {
+
+	private static final Logger logger = Logger.getLogger(SonarScanRegistry.class);
+
+	private static final String SCANNED_COMMITS_FILENAME = "sonarScannedCommits.txt";
+	private static final int DEBT_INDEX_CACHE_SIZE = 8;
+
+	private final SonarQubeWorker sonarQubeWorker;
+	private final File scannedCommitsFile;
+	// scan keys of the scanned commits
+	private final Set<String> scannedCommits = ConcurrentHashMap.newKeySet();
+	// scan keys read from the file, whose analysis is checked on the server at first use
+	private final Set<String> previousRunScans = ConcurrentHashMap.newKeySet();
+	private final Map<String, CompletableFuture<Void>> runningScans = new ConcurrentHashMap<>();
+	private final Map<String, DebtIndex> debtIndexes = new LinkedHashMap<String, DebtIndex>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, DebtIndex> eldest) {
+			return size() > DEBT_INDEX_CACHE_SIZE;
+		}
+	};
+
+	private ExecutorService scanAheadExecutor;
+	private volatile Scan scanAhead;
+
+	/**
+	 * @param  resultsDir  folder where scanned commits are saved
+	 * @param  sonarQubeWorker  worker used to retrieve analyses from SonarQube Server
+	 */
+	public SonarScanRegistry(String resultsDir, SonarQubeWorker sonarQubeWorker) {
+		this.sonarQubeWorker = sonarQubeWorker;
+		this.scannedCommitsFile = new File(Utils.preparePathOsBased(false, resultsDir, SCANNED_COMMITS_FILENAME));
+		if (scannedCommitsFile.exists()) {
+			try {
+				for (String line : Files.readAllLines(scannedCommitsFile.toPath())) {
+					if (!line.trim().isEmpty())
+						scannedCommits.add(line.trim());
+				}
+				previousRunScans.addAll(scannedCommits);
+				logger.info(scannedCommits.size() + " commits already scanned on SonarQube Server");
+			} catch (IOException e) {
+				logger.error(e);
+			}
+		}
+	}
+
+	/**
+	 * Enable the scheduling of scans ahead of their use, run one at a time on a background thread
+	 *
+	 * @param  scan  checkout and scan of a commit in a working tree reserved to scans ahead
+	 */
+	public synchronized void enableScanAhead(Scan scan) {
+		this.scanAhead = scan;
+		if (scanAheadExecutor == null) {
+			scanAheadExecutor = Executors.newSingleThreadExecutor(r -> {
+				Thread thread = new Thread(r, "sonarqube-scan-ahead");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	/**
+	 * Schedule the scan of a commit, if scans ahead are enabled and the commit is not scanned yet
+	 *
+	 * @param  commitHash  commit to scan
+	 */
+	public void scheduleScan(String commitHash) {
+		if (scanAhead != null)
+			startScan(commitHash, scanAhead, true);
+	}
+
+	/**
+	 * Get the debt index of a commit, scanning it only if it was never scanned nor scheduled
+	 *
+	 * @param  commitHash  commit of the analysis
+	 * @param  scan  scan of the commit in the caller working tree, used if the commit is not scanned yet
+	 * @throws  Exception if the scan or the retrieval of the analysis fails
+	 * @return  debt index of the commit
+	 */
+	public DebtIndex getDebtIndex(String commitHash, Scan scan) throws Exception {
+		awaitScan(commitHash, scan);
+
+		DebtIndex debtIndex;
+		synchronized (debtIndexes) {
+			debtIndex = debtIndexes.get(commitHash);
+		}
+		if (debtIndex == null) {
+			// an analysis of a previous run may be missing on the server, an empty or failed response is a miss
+			boolean previousRunScan = previousRunScans.remove(scanKey(commitHash));
+			try {
+				debtIndex = sonarQubeWorker.getDebtIndexFor(commitHash);
+			} catch (IOException e) {
+				if (!previousRunScan)
+					throw e;
+			}
+			if (previousRunScan && (debtIndex == null || debtIndex.size() == 0)) {
+				logger.warn("No analysis of " + sonarQubeWorker.getProjectKey(commitHash)
+						+ " on SonarQube Server, scanning it again");
+				scannedCommits.remove(scanKey(commitHash));
+				awaitScan(commitHash, scan);
+				debtIndex = sonarQubeWorker.getDebtIndexFor(commitHash);
+			}
+			synchronized (debtIndexes) {
+				debtIndexes.put(commitHash, debtIndex);
+			}
+		}
+		return debtIndex;
+	}
+
+	public boolean isScanned(String commitHash) {
+		return scannedCommits.contains(scanKey(commitHash));
+	}
+
+	private void awaitScan(String commitHash, Scan scan) throws Exception {
+		try {
+			startScan(commitHash, scan, false).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting scan of " + commitHash);
+		} catch (ExecutionException e) {
+			throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+		}
+	}
+
+	/**
+	 * @param  commitHash  scanned commit
+	 * @return  key of a scan, valid only for the same SonarQube project and sources path
+	 */
+	private String scanKey(String commitHash) {
+		return sonarQubeWorker.getProjectKey(commitHash) + ":" + sonarQubeWorker.getRelativeSrcPath();
+	}
+
+	/**
+	 * Stop the scans ahead not started yet
+	 */
+	public synchronized void shutdown() {
+		if (scanAheadExecutor != null)
+			scanAheadExecutor.shutdownNow();
+	}
+
+	private CompletableFuture<Void> startScan(String commitHash, Scan scan, boolean ahead) {
+		if (isScanned(commitHash))
+			return CompletableFuture.completedFuture(null);
+
+		CompletableFuture<Void> created = new CompletableFuture<>();
+		CompletableFuture<Void> running = runningScans.putIfAbsent(commitHash, created);
+		if (running != null)
+			return running;
+
+		Runnable task = () -> {
+			try {
+				if (!isScanned(commitHash)) {
+					scan.run(commitHash);
+					markScanned(commitHash);
+				}
+				created.complete(null);
+			} catch (Throwable t) {
+				created.completeExceptionally(t);
+			} finally {
+				runningScans.remove(commitHash);
+			}
+		};
+		if (ahead)
+			scanAheadExecutor.execute(task);
+		else
+			task.run();
+		return created;
+	}
+
+	private synchronized void markScanned(String commitHash) throws IOException {
+		String scanKey = scanKey(commitHash);
+		scannedCommits.add(scanKey);
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(scannedCommitsFile, true))) {
+			writer.append(scanKey);
+			writer.append("\n");
+		}
+	}
+
+	/**
+	 * Checkout and scan of a commit with SonarQube Scanner
+	 */
+	public interface Scan {
+		void run(String commitHash) throws Exception;
+	}
+}
@@ -0,0 +1,70 @@
+package com.group;
+
+import com.group.worker.DesigniteWorker;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AnalysisConfigTest {
+
+    @Test
+    void builderUsesReferenceDefaults() {
+        AnalysisConfig config = AnalysisConfig.builder()
+                .repoDir("/repos/project")
+                .resultsDir("/results")
+                .refactoringMinerBranchToAnalyze("main")
+                .build();
+
+        assertEquals(1, config.getProcessParallelism());
+        assertEquals(16, config.getRefactoringMinerQueueCapacity());
+        assertEquals(DesigniteWorker.Mode.PROCESS, config.getDesigniteMode());
+        assertFalse(config.isDesigniteCacheEnabled());
+        assertTrue(config.getFilterSmellTypes().isEmpty());
+        assertFalse(config.isResume());
+    }
+
+    @Test
+    void toBuilderKeepsTheOtherSettings() {
+        AnalysisConfig config = AnalysisConfig.builder()
+                .repoDir("/repos/first")
+                .resultsDir("/results/first")
+                .refactoringMinerBranchToAnalyze("main")
+                .processParallelism(4)
+                .filterSmellTypes(Collections.singleton("Long Method"))
+                .build();
+
+        AnalysisConfig other = config.toBuilder().repoDir("/repos/second").resultsDir("/results/second").build();
+
+        assertEquals("/repos/second", other.getRepoDir());
+        assertEquals("/repos/first", config.getRepoDir());
+        assertEquals(4, other.getProcessParallelism());
+        assertEquals(Collections.singleton("Long Method"), other.getFilterSmellTypes());
+    }
+
+    @Test
+    void missingRequiredSettingsAreRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> AnalysisConfig.builder().resultsDir("/results").refactoringMinerBranchToAnalyze("main").build());
+        assertThrows(IllegalArgumentException.class,
+                () -> AnalysisConfig.builder().repoDir("/repos/project").resultsDir("/results").build());
+        // a range of commits does not need a branch
+        assertNotNull(AnalysisConfig.builder().repoDir("/repos/project").resultsDir("/results")
+                .refactoringMinerDetectBetweenCommits(true).build());
+    }
+
+    @Test
+    void countsAreAtLeastOne() {
+        AnalysisConfig config = AnalysisConfig.builder()
+                .repoDir("/repos/project")
+                .resultsDir("/results")
+                .refactoringMinerBranchToAnalyze("main")
+                .processParallelism(0)
+                .pipelineStatsIntervalSeconds(-1)
+                .build();
+
+        assertEquals(1, config.getProcessParallelism());
+        assertEquals(0, config.getPipelineStatsIntervalSeconds());
+    }
+}
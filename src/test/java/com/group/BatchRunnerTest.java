@@ -0,0 +1,53 @@
+package com.group;
+
+import com.group.csv.ResultsFormat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchRunnerTest {
+
+    private Path dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("batch");
+    }
+
+    @AfterEach
+    void tearDown() {
+        Utils.deleteDirectory(dir.toFile());
+    }
+
+    @Test
+    void mergedDatasetNamesTheProjectOfEachRow() throws IOException {
+        Path first = Files.createDirectory(dir.resolve("first"));
+        Path second = Files.createDirectory(dir.resolve("second"));
+        Files.write(first.resolve(ResultsFormat.CSV.getFilename()),
+                Arrays.asList("\"commit\",\"class\"", "\"a1\",\"Foo.java\"", "\"a2\",\"Bar.java\""),
+                StandardCharsets.UTF_8);
+        Files.write(second.resolve(ResultsFormat.CSV.getFilename()),
+                Arrays.asList("\"commit\",\"class\"", "\"b1\",\"Baz.java\""), StandardCharsets.UTF_8);
+        Path merged = dir.resolve("merged.csv");
+
+        BatchRunner.mergeResults(Arrays.asList(
+                new BatchRunner.BatchRepository("first", "/repos/first", null, "main", first.toString()),
+                new BatchRunner.BatchRepository("missing", "/repos/missing", null, "main",
+                        dir.resolve("missing").toString()),
+                new BatchRunner.BatchRepository("second", "/repos/second", null, "main", second.toString())),
+                ResultsFormat.CSV, merged);
+
+        List<String> lines = Files.readAllLines(merged, StandardCharsets.UTF_8);
+        assertEquals(Arrays.asList("\"project\",\"commit\",\"class\"", "\"first\",\"a1\",\"Foo.java\"",
+                "\"first\",\"a2\",\"Bar.java\"", "\"second\",\"b1\",\"Baz.java\""), lines);
+    }
+}
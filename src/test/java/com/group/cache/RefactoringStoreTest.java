@@ -0,0 +1,77 @@
+package com.group.cache;
+
+import com.group.Utils;
+import com.group.pojo.RefactoringRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.refactoringminer.api.RefactoringType;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RefactoringStoreTest {
+
+    private File resultsDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        resultsDir = Files.createTempDirectory("refactoringStore").toFile();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Utils.deleteDirectory(resultsDir);
+    }
+
+    @Test
+    void storedCommitsAreReloaded() throws IOException {
+        try (RefactoringStore store = new RefactoringStore(resultsDir.getAbsolutePath())) {
+            store.put("abc", Arrays.asList(
+                    new RefactoringRecord(RefactoringType.EXTRACT_OPERATION, "src/A.java", "A.m()", "Extract Method"),
+                    new RefactoringRecord(RefactoringType.MOVE_CLASS, null, null, null)));
+            store.put("def", Collections.emptyList());
+        }
+
+        try (RefactoringStore store = new RefactoringStore(resultsDir.getAbsolutePath())) {
+            assertEquals(2, store.size());
+            List<RefactoringRecord> records = store.get("abc");
+            assertEquals(2, records.size());
+            assertEquals(RefactoringType.EXTRACT_OPERATION, records.get(0).getRefactoringType());
+            assertEquals("src/A.java", records.get(0).getFilePath());
+            assertEquals("A.m()", records.get(0).getCodeElement());
+            assertEquals("Extract Method", records.get(0).getDescription());
+            assertNull(records.get(1).getFilePath());
+            assertTrue(store.get("def").isEmpty());
+            assertNull(store.get("ghi"));
+        }
+    }
+
+    @Test
+    void incompleteTailIsTruncated() throws IOException {
+        try (RefactoringStore store = new RefactoringStore(resultsDir.getAbsolutePath())) {
+            store.put("abc", Collections.emptyList());
+            store.put("def", Collections.emptyList());
+        }
+        File storeFile = new File(resultsDir, "refactoringStore.bin");
+        try (RandomAccessFile file = new RandomAccessFile(storeFile, "rw")) {
+            file.setLength(file.length() - 2);
+        }
+
+        try (RefactoringStore store = new RefactoringStore(resultsDir.getAbsolutePath())) {
+            assertTrue(store.contains("abc"));
+            assertFalse(store.contains("def"));
+            store.put("def", Collections.emptyList());
+        }
+        try (RefactoringStore store = new RefactoringStore(resultsDir.getAbsolutePath())) {
+            assertEquals(2, store.size());
+        }
+    }
+}
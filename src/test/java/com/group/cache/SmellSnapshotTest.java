@@ -0,0 +1,49 @@
+package com.group.cache;
+
+import com.group.csv.Smell;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SmellSnapshotTest {
+
+    @Test
+    void snapshotKeepsSmells() throws IOException {
+        List<Smell> smellList = Arrays.asList(
+                new Smell("project", "com.group", "Foo", null, "Insufficient Modularization"),
+                new Smell("project", "com.group", "Foo", "bar", "Long Method"),
+                new Smell("project", "com.group.csv", "Bar", "bar", "Long Method"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SmellSnapshot.write(smellList, out);
+
+        assertEquals(smellList, SmellSnapshot.read(new ByteArrayInputStream(out.toByteArray())));
+    }
+
+    @Test
+    void repeatedNamesAreWrittenOnce() throws IOException {
+        List<Smell> smellList = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            smellList.add(new Smell("project", "com.group", "Foo", "method" + (i % 10), "Long Method"));
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SmellSnapshot.write(smellList, out);
+
+        // 5 single byte references per smell, plus the string table
+        assertTrue(out.size() < 1000 * 5 + 200);
+        assertEquals(smellList, SmellSnapshot.read(new ByteArrayInputStream(out.toByteArray())));
+    }
+
+    @Test
+    void unknownFormatIsRejected() {
+        assertThrows(IOException.class, () -> SmellSnapshot.read(new ByteArrayInputStream(new byte[]{1, 2, 3, 4, 5, 6, 7, 8})));
+    }
+}
@@ -0,0 +1,98 @@
+package com.group.checkpoint;
+
+import com.group.Utils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CheckpointJournalTest {
+
+    private static final String RESULTS_FILENAME = "datasets.csv";
+
+    private File resultsDir;
+    private Path resultsFile;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        resultsDir = Files.createTempDirectory("checkpointJournal").toFile();
+        resultsFile = resultsDir.toPath().resolve(RESULTS_FILENAME);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Utils.deleteDirectory(resultsDir);
+    }
+
+    @Test
+    void resumeDropsUncommittedRows() throws IOException {
+        try (CheckpointJournal journal = new CheckpointJournal(resultsDir.getAbsolutePath(), RESULTS_FILENAME, false)) {
+            append("header\nrow1\nrow2\n");
+            journal.commit(Arrays.asList("c1", "c2"));
+            append("row3\n");
+            journal.commit(Collections.singletonList("c3"));
+            // rows of an interrupted batch
+            append("row4\nro");
+        }
+
+        try (CheckpointJournal journal = new CheckpointJournal(resultsDir.getAbsolutePath(), RESULTS_FILENAME, true)) {
+            assertEquals(3, journal.size());
+            assertTrue(journal.isCommitted("c2"));
+            assertFalse(journal.isCommitted("c4"));
+            assertEquals("header\nrow1\nrow2\nrow3\n", read());
+        }
+    }
+
+    @Test
+    void resumeIgnoresIncompleteJournalLine() throws IOException {
+        try (CheckpointJournal journal = new CheckpointJournal(resultsDir.getAbsolutePath(), RESULTS_FILENAME, false)) {
+            append("row1\n");
+            journal.commit(Collections.singletonList("c1"));
+            append("row2\n");
+        }
+        Files.write(resultsDir.toPath().resolve(RESULTS_FILENAME + ".journal"), "c2\t1".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        try (CheckpointJournal journal = new CheckpointJournal(resultsDir.getAbsolutePath(), RESULTS_FILENAME, true)) {
+            assertEquals(1, journal.size());
+            assertEquals("row1\n", read());
+            append("row2\n");
+            journal.commit(Collections.singletonList("c2"));
+        }
+        try (CheckpointJournal journal = new CheckpointJournal(resultsDir.getAbsolutePath(), RESULTS_FILENAME, true)) {
+            assertTrue(journal.isCommitted("c2"));
+            assertEquals("row1\nrow2\n", read());
+        }
+    }
+
+    @Test
+    void newRunClearsPreviousResults() throws IOException {
+        try (CheckpointJournal journal = new CheckpointJournal(resultsDir.getAbsolutePath(), RESULTS_FILENAME, false)) {
+            append("row1\n");
+            journal.commit(Collections.singletonList("c1"));
+        }
+
+        try (CheckpointJournal journal = new CheckpointJournal(resultsDir.getAbsolutePath(), RESULTS_FILENAME, false)) {
+            assertFalse(journal.isCommitted("c1"));
+            assertTrue(journal.isResultsFileEmpty());
+        }
+    }
+
+    private void append(String rows) throws IOException {
+        Files.write(resultsFile, rows.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private String read() throws IOException {
+        return new String(Files.readAllBytes(resultsFile), StandardCharsets.UTF_8);
+    }
+}
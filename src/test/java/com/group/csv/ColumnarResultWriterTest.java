@@ -0,0 +1,106 @@
+package com.group.csv;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ColumnarResultWriterTest {
+
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = Files.createTempFile("datasets", ".col");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void rowsAreReadAsWritten() throws IOException {
+        List<ProcessResult> rows = Arrays.asList(
+                new ProcessResult("a1", "Ann", "ann@example.com", "Foo.java", "run", "Extract Method",
+                        "Long Method", -120, ProcessResult.TD_CLASS.IMPROVED, true, false),
+                new ProcessResult("a1", "Ann", "ann@example.com", "Bar.java", null, null,
+                        "God Class", null, null, false, true),
+                new ProcessResult("b2", "Bob", null, "Foo.java", "run", "Extract Method",
+                        "Long Method", 45, ProcessResult.TD_CLASS.PEJORATIVE, false, false));
+        try (ColumnarResultWriter writer = new ColumnarResultWriter(file.toString())) {
+            writer.write(rows);
+        }
+        // a second writer appends new row groups
+        try (ColumnarResultWriter writer = new ColumnarResultWriter(file.toString())) {
+            writer.write(rows.subList(2, 3), "other");
+        }
+
+        List<ColumnarResultReader.RowGroup> rowGroups = new ArrayList<>();
+        try (ColumnarResultReader reader = new ColumnarResultReader(file)) {
+            ColumnarResultReader.RowGroup rowGroup;
+            while ((rowGroup = reader.nextRowGroup()) != null)
+                rowGroups.add(rowGroup);
+        }
+
+        assertEquals(2, rowGroups.size());
+        assertEquals("", rowGroups.get(0).getSource());
+        assertEquals("other", rowGroups.get(1).getSource());
+        List<ProcessResult> read = new ArrayList<>(rowGroups.get(0).getRows());
+        read.addAll(rowGroups.get(1).getRows());
+        assertEquals(4, read.size());
+        assertSameRow(rows.get(0), read.get(0));
+        assertSameRow(rows.get(1), read.get(1));
+        assertSameRow(rows.get(2), read.get(2));
+        assertSameRow(rows.get(2), read.get(3));
+    }
+
+    @Test
+    void incompleteRowGroupIsSkipped() throws IOException {
+        List<ProcessResult> rows = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            rows.add(new ProcessResult("c" + i, "Ann", "ann@example.com", "Foo" + i % 7 + ".java", "run",
+                    "Rename Method", "Long Method", i - 50, ProcessResult.getTdClassFor(i - 50), i % 2 == 0, false));
+        }
+        try (ColumnarResultWriter writer = new ColumnarResultWriter(file.toString())) {
+            writer.write(rows.subList(0, 60));
+        }
+        long committedLength = Files.size(file);
+        try (ColumnarResultWriter writer = new ColumnarResultWriter(file.toString())) {
+            writer.write(rows.subList(60, 100));
+        }
+        // as a run interrupted while writing the second row group
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.setLength(committedLength + 10);
+        }
+
+        List<ProcessResult> read = ColumnarResultReader.readAll(file);
+
+        assertEquals(60, read.size());
+        for (int i = 0; i < read.size(); i++)
+            assertSameRow(rows.get(i), read.get(i));
+    }
+
+    private static void assertSameRow(ProcessResult expected, ProcessResult actual) {
+        assertEquals(expected.getCommitHash(), actual.getCommitHash());
+        assertEquals(expected.getCommitterName(), actual.getCommitterName());
+        assertEquals(expected.getCommitterEmail(), actual.getCommitterEmail());
+        assertEquals(expected.getClassName(), actual.getClassName());
+        assertEquals(expected.getMethodName(), actual.getMethodName());
+        assertEquals(expected.getRefactoringType(), actual.getRefactoringType());
+        assertEquals(expected.getSmellType(), actual.getSmellType());
+        assertEquals(expected.getTdDifference(), actual.getTdDifference());
+        assertEquals(expected.getTdClass(), actual.getTdClass());
+        assertEquals(expected.isSmellRemovedWithRefactoring(), actual.isSmellRemovedWithRefactoring());
+        assertEquals(expected.isSmellRemovedWithoutRefactoring(), actual.isSmellRemovedWithoutRefactoring());
+    }
+}
@@ -0,0 +1,74 @@
+package com.group.csv;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DesigniteCsvReaderTest {
+
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = Files.createTempFile("smells", ".csv");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void readDesignSmellsKeepsOnlyAllowedSmells() throws IOException {
+        write("Project Name,Package Name,Type Name,Code Smell,Cause of the Smell",
+                "project,com.group,Foo,Insufficient Modularization,The tool detected the smell, with a comma",
+                "project,com.group,Bar,Cyclic-Dependent Modularization,cause",
+                "project, com.group,\"Baz\",Deficient Encapsulation,\"quoted \"\"cause\"\"\"",
+                "truncated,row");
+
+        List<Smell> smellList = new ArrayList<>();
+        int rows = reader().readDesignSmells(file, smellList::add);
+
+        assertEquals(4, rows);
+        assertEquals(2, smellList.size());
+        assertEquals(new Smell("project", "com.group", "Foo", null, "Insufficient Modularization"), smellList.get(0));
+        assertEquals(new Smell("project", "com.group", "Baz", null, "Deficient Encapsulation"), smellList.get(1));
+        // repeated strings are shared
+        assertSame(smellList.get(0).getPackageName(), smellList.get(1).getPackageName());
+    }
+
+    @Test
+    void readImplementationSmellsReadsMethodName() throws IOException {
+        write("Project Name,Package Name,Type Name,Method Name,Code Smell,Cause of the Smell,Method start line no",
+                "project,com.group,Foo,bar,Long Method,cause,12",
+                "project,com.group,Foo,baz,Magic Number,cause,20",
+                "project,com.group,Foo,\"qu,x\",Long Parameter List,cause,30");
+
+        List<Smell> smellList = new ArrayList<>();
+        reader().readImplementationSmells(file, smellList::add);
+
+        assertEquals(2, smellList.size());
+        assertEquals(new Smell("project", "com.group", "Foo", "bar", "Long Method"), smellList.get(0));
+        assertEquals("qu,x", smellList.get(1).getMethodName());
+    }
+
+    private DesigniteCsvReader reader() {
+        return new DesigniteCsvReader(new HashSet<>(Arrays.asList(
+                "Insufficient Modularization", "Deficient Encapsulation", "Long Method", "Long Parameter List")));
+    }
+
+    private void write(String... lines) throws IOException {
+        Files.write(file, Arrays.asList(lines), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,44 @@
+package com.group.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricsTest {
+
+    @Test
+    void registriesAreIndependent() {
+        Metrics first = new Metrics();
+        Metrics second = new Metrics();
+        first.increment("process.commits");
+
+        assertEquals(1, first.counter("process.commits").get());
+        assertEquals(0, second.counter("process.commits").get());
+    }
+
+    @Test
+    void combineSumsTimersAndCounters() {
+        Metrics first = new Metrics();
+        first.add("csv.rows-written", 3);
+        first.timer("designite.analysis").record(TimeUnit.MILLISECONDS.toNanos(3));
+        Metrics second = new Metrics();
+        second.add("csv.rows-written", 4);
+        second.increment("process.commits");
+        second.timer("designite.analysis").record(TimeUnit.MILLISECONDS.toNanos(500));
+
+        Metrics combined = Metrics.combine(Arrays.asList(first, second));
+
+        assertEquals(7, combined.counter("csv.rows-written").get());
+        assertEquals(1, combined.counter("process.commits").get());
+        Timer timer = combined.timer("designite.analysis");
+        assertEquals(2, timer.getCount());
+        assertEquals(503, timer.getTotalMillis(), 0.001);
+        assertEquals(500, timer.getMaxMillis(), 0.001);
+        assertEquals(4.096, timer.getPercentileMillis(0.5), 0.001);
+        // the combined registries are not changed
+        assertEquals(3, first.counter("csv.rows-written").get());
+    }
+}
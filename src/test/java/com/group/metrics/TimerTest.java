@@ -0,0 +1,39 @@
+package com.group.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimerTest {
+
+    @Test
+    void percentilesAreBucketUpperBounds() {
+        Timer timer = new Timer();
+        for (int i = 0; i < 90; i++) {
+            timer.record(TimeUnit.MILLISECONDS.toNanos(3));
+        }
+        for (int i = 0; i < 10; i++) {
+            timer.record(TimeUnit.MILLISECONDS.toNanos(500));
+        }
+
+        assertEquals(100, timer.getCount());
+        assertEquals(90 * 3 + 10 * 500, timer.getTotalMillis(), 0.001);
+        assertEquals(500, timer.getMaxMillis(), 0.001);
+        // 3 ms falls in the bucket up to 4.096 ms
+        assertEquals(4.096, timer.getPercentileMillis(0.5), 0.001);
+        assertEquals(4.096, timer.getPercentileMillis(0.9), 0.001);
+        // bounded by the max value
+        assertEquals(500, timer.getPercentileMillis(0.99), 0.001);
+    }
+
+    @Test
+    void emptyTimer() {
+        Timer timer = new Timer();
+
+        assertEquals(0, timer.getCount());
+        assertEquals(0, timer.getMeanMillis(), 0);
+        assertEquals(0, timer.getPercentileMillis(0.95), 0);
+    }
+}
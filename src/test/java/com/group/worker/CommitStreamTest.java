@@ -0,0 +1,33 @@
+package com.group.worker;
+
+import com.group.pojo.Commit;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CommitStreamTest {
+
+    @Test
+    void closeStopsTheProducer() throws Exception {
+        CountDownLatch stopped = new CountDownLatch(1);
+        CommitStream stream = new CommitStream(1).start("test-miner", s -> {
+            try {
+                // mines until the stream is closed, waiting on the full queue
+                for (int i = 0; !s.isClosed(); i++) {
+                    s.publish(new Commit("c" + i, Collections.emptyList()));
+                }
+            } finally {
+                stopped.countDown();
+            }
+        });
+
+        assertEquals("c0", stream.next().getHash());
+        stream.close();
+
+        assertTrue(stopped.await(5, TimeUnit.SECONDS));
+    }
+}
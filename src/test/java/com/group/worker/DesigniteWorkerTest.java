@@ -0,0 +1,126 @@
+package com.group.worker;
+
+import com.group.Utils;
+import com.group.cache.SmellCache;
+import com.group.csv.Smell;
+import com.group.metrics.Metrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DesigniteWorkerTest {
+
+    private Path dir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dir = Files.createTempDirectory("designite");
+    }
+
+    @AfterEach
+    void tearDown() {
+        Utils.deleteDirectory(dir.toFile());
+    }
+
+    @Test
+    void fullAnalysisDoesNotReadIncrementalSmells() throws IOException {
+        List<Smell> exactSmells = Arrays.asList(
+                new Smell("project", "com.group", "Foo", null, "Insufficient Modularization"),
+                new Smell("project", "com.group", "Bar", "run", "Long Method"));
+        List<Smell> previousSmells = Collections.singletonList(
+                new Smell("project", "com.group", "Foo", "run", "Long Method"));
+        int[] runs = new int[1];
+        DesigniteWorker designiteWorker = new DesigniteWorker("/opt/designite", dir.toString(), dir.toString(),
+                new SmellCache(dir.toString())) {
+            @Override
+            public List<Smell> execute(String folderName) {
+                runs[0]++;
+                return exactSmells;
+            }
+        };
+
+        List<Smell> incrementalSmells = designiteWorker.executeIncremental("c1", "tree", previousSmells,
+                Collections.emptySet(), (directories, targetDir) -> fail("nothing to export"));
+        assertEquals(previousSmells, incrementalSmells);
+
+        assertEquals(exactSmells, designiteWorker.execute("c1", "tree"));
+        assertEquals(1, runs[0]);
+        // the exact smells are cached and preferred by the next incremental analyses
+        assertEquals(exactSmells, designiteWorker.execute("c1", "tree"));
+        assertEquals(exactSmells, designiteWorker.executeIncremental("c1", "tree", previousSmells,
+                Collections.emptySet(), (directories, targetDir) -> fail("nothing to export")));
+        assertEquals(1, runs[0]);
+    }
+
+    @Test
+    void sameTreeOfAnotherProjectIsNotReadFromCache() throws IOException {
+        SmellCache smellCache = new SmellCache(dir.toString());
+        int[] runs = new int[1];
+        DesigniteWorker projectWorker = newCountingWorker(dir.resolve("project").toString(), smellCache, runs);
+        DesigniteWorker forkWorker = newCountingWorker(dir.resolve("fork").toString(), smellCache, runs);
+
+        assertEquals("project", projectWorker.execute("c1", "tree").get(0).getProjectName());
+        assertEquals("fork", forkWorker.execute("c1", "tree").get(0).getProjectName());
+        assertEquals("project", projectWorker.execute("c1", "tree").get(0).getProjectName());
+        assertEquals(2, runs[0]);
+    }
+
+    @Test
+    void smellFiltersWithSameHashCodeAreCachedApart() throws IOException {
+        SmellCache smellCache = new SmellCache(dir.toString());
+        int[] runs = new int[1];
+        String repoDir = dir.resolve("project").toString();
+        // "Aa" and "BB" have the same String hash code
+        DesigniteWorker first = newCountingWorker(repoDir, smellCache, runs)
+                .withSmellFilter(Collections.singleton("Aa"));
+        DesigniteWorker second = newCountingWorker(repoDir, smellCache, runs)
+                .withSmellFilter(Collections.singleton("BB"));
+
+        first.execute("c1", "tree");
+        second.execute("c1", "tree");
+        first.execute("c1", "tree");
+
+        assertEquals(2, runs[0]);
+    }
+
+    @Test
+    void deletedDirectoriesKeepOnlyTheOtherPreviousSmells() throws IOException {
+        List<Smell> previousSmells = Arrays.asList(
+                new Smell("project", "com.group", "Foo", "run", "Long Method"),
+                new Smell("project", "com.group.removed", "Bar", "run", "Long Method"));
+        Metrics metrics = new Metrics();
+        DesigniteWorker designiteWorker = new DesigniteWorker("/opt/designite", dir.resolve("project").toString(),
+                dir.toString()).withMetrics(metrics);
+
+        // every file of the package is deleted, so the exporter writes nothing
+        List<Smell> smellList = designiteWorker.executeIncremental("c2", null, previousSmells,
+                Collections.singleton("src/main/java/com/group/removed"), (directories, targetDir) -> {
+                });
+
+        assertEquals(previousSmells.subList(0, 1), smellList);
+        assertEquals(0, metrics.timer("designite.analysis").getCount());
+    }
+
+    /**
+     * Worker returning a smell of the project of its repository directory, counting the Designite runs
+     */
+    private DesigniteWorker newCountingWorker(String repoDir, SmellCache smellCache, int[] runs) {
+        return new DesigniteWorker("/opt/designite", repoDir, dir.toString(), smellCache) {
+            @Override
+            public List<Smell> execute(String folderName) {
+                runs[0]++;
+                return Collections.singletonList(new Smell(Utils.getProjectNameFromRepoDir(repoDir), "com.group",
+                        "Foo", "run", "Long Method"));
+            }
+        };
+    }
+}
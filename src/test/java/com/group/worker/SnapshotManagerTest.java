@@ -0,0 +1,70 @@
+package com.group.worker;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnapshotManagerTest {
+
+    private static final String WORKING_DIR = "/tmp/project";
+
+    @Test
+    void newestFirstHistoryIsMaterializedOncePerCommit() throws Exception {
+        List<String> history = Arrays.asList("c5", "c4", "c3", "c2", "c1");
+
+        // c5 and c4 for the first commit, then only the previous commit of each one
+        assertEquals(5, countCheckouts(history, true));
+    }
+
+    @Test
+    void oldestFirstHistoryIsMaterializedOncePerCommit() throws Exception {
+        List<String> history = new ArrayList<>(Arrays.asList("c5", "c4", "c3", "c2", "c1"));
+        Collections.reverse(history);
+
+        assertEquals(5, countCheckouts(history, false));
+    }
+
+    @Test
+    void wrongDirectionMaterializesEverySnapshot() throws Exception {
+        List<String> history = Arrays.asList("c5", "c4", "c3", "c2", "c1");
+
+        assertEquals(8, countCheckouts(history, false));
+    }
+
+    /**
+     * Materialize the snapshots of each commit of a linear history (but the root) and its previous commit
+     *
+     * @param commits     commits in mining order
+     * @param newestFirst materialization order
+     * @return number of checkouts
+     */
+    private static int countCheckouts(List<String> commits, boolean newestFirst) throws Exception {
+        Map<String, String> checkedOut = new HashMap<>();
+        SnapshotManager snapshots = new SnapshotManager(new SnapshotManager.Checkouts() {
+            @Override
+            public String getCheckedOutCommit(String workingDir) {
+                return checkedOut.get(workingDir);
+            }
+
+            @Override
+            public void checkout(String commitHashId, String workingDir) {
+                checkedOut.put(workingDir, commitHashId);
+            }
+        });
+        for (String commit : commits) {
+            String previousCommit = "c" + (Integer.parseInt(commit.substring(1)) - 1);
+            if (previousCommit.equals("c0"))
+                continue;
+            for (String hash : SnapshotManager.materializationOrder(commit, previousCommit, newestFirst))
+                snapshots.materialize(WORKING_DIR, hash);
+        }
+        return snapshots.getCheckouts();
+    }
+}
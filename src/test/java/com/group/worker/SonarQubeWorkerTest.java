@@ -1,7 +1,108 @@
 package com.group.worker;
 
+import com.group.pojo.sonar.DebtIndex;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 public class SonarQubeWorkerTest {
 
+	private static final int PAGE_SIZE = 500;
+	private static final Pattern PAGE_PATTERN = Pattern.compile("[?&]p=(\\d+)");
+
+	@Test
+	void getDebtIndexFetchesAllPages() throws IOException {
+		int total = 1234;
+		Set<String> requestedPages = ConcurrentHashMap.newKeySet();
+		HttpServer server = startStubServer(total, requestedPages);
+		try (SonarQubeWorker sonarQubeWorker = new SonarQubeWorker("http://localhost:" + server.getAddress().getPort(),
+				"sonar-scanner", "/tmp/project", "src", 3)) {
+			DebtIndex debtIndex = sonarQubeWorker.getDebtIndexFor("abc123");
+
+			assertEquals(3, requestedPages.size());
+			assertTrue(requestedPages.contains("project_abc123/3"));
+			assertEquals(total, debtIndex.size());
+			assertEquals(0, debtIndex.get("com/group/Class0.java"));
+			assertEquals(7, debtIndex.get("com/group/Class7.java"));
+			assertEquals(1233, debtIndex.get("com/group/Class1233.java"));
+			// first value wins for duplicated paths
+			assertEquals(501, debtIndex.get("com/group/Class501.java"));
+			assertEquals(0, debtIndex.get("com/group/Missing.java"));
+		} finally {
+			server.stop(0);
+			((ExecutorService) server.getExecutor()).shutdownNow();
+		}
+	}
+
+	@Test
+	void getDebtIndexFailsOverTheComponentTreeLimit() throws IOException {
+		Set<String> requestedPages = ConcurrentHashMap.newKeySet();
+		HttpServer server = startStubServer(SonarQubeWorker.MAX_COMPONENTS + 1, requestedPages);
+		try (SonarQubeWorker sonarQubeWorker = new SonarQubeWorker("http://localhost:" + server.getAddress().getPort(),
+				"sonar-scanner", "/tmp/project", "src", 3)) {
+			assertThrows(IOException.class, () -> sonarQubeWorker.getDebtIndexFor("abc123"));
+			assertEquals(1, requestedPages.size());
+		} finally {
+			server.stop(0);
+			((ExecutorService) server.getExecutor()).shutdownNow();
+		}
+	}
+
+	/**
+	 * Stub of the SonarQube component_tree API, returning components with sqale_index equal to their number
+	 */
+	private static HttpServer startStubServer(int total, Set<String> requestedPages) throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.setExecutor(Executors.newFixedThreadPool(4));
+		server.createContext("/api/measures/component_tree", exchange -> {
+			String query = exchange.getRequestURI().getQuery();
+			Matcher matcher = PAGE_PATTERN.matcher("?" + query);
+			int page = matcher.find() ? Integer.parseInt(matcher.group(1)) : 1;
+			String component = query.substring("component=".length(), query.indexOf('&'));
+			requestedPages.add(component + "/" + page);
+
+			StringBuilder json = new StringBuilder();
+			json.append("{\"paging\":{\"pageIndex\":").append(page).append(",\"pageSize\":").append(PAGE_SIZE)
+					.append(",\"total\":").append(total).append("},")
+					.append("\"baseComponent\":{\"key\":\"").append(component)
+					.append("\",\"measures\":[{\"metric\":\"sqale_index\",\"value\":\"99999\"}]},")
+					.append("\"components\":[");
+			for (int i = (page - 1) * PAGE_SIZE; i < Math.min(page * PAGE_SIZE, total); i++) {
+				if (i > (page - 1) * PAGE_SIZE)
+					json.append(',');
+				json.append("{\"key\":\"k").append(i).append("\",\"path\":\"src/main/java/com/group/Class").append(i)
+						.append(".java\",\"measures\":[{\"metric\":\"sqale_index\",\"value\":\"").append(i)
+						.append("\",\"bestValue\":false}]}");
+			}
+			// a duplicated path on a later page must not override the first value
+			if (page == 3)
+				json.append(",{\"path\":\"src/main/java/com/group/Class501.java\",\"measures\":[{\"metric\":\"sqale_index\",\"value\":\"1\"}]}");
+			json.append("]}");
+
+			byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		server.start();
+		return server;
+	}
+
 	/*@Test
 	void startSonarService() throws IOException {
 
@@ -25,7 +126,7 @@ public class SonarQubeWorkerTest {
 		String sonarQubeScannerBinDir = conf.getString("sonarqube.scanner.bin-dir");
 
 		SonarQubeWorker sonarQubeWorker = new SonarQubeWorker(sonarQubeServerBaseUrl, sonarQubeScannerBinDir, repoDir);
-		Analysis analysis =sonarQubeWorker.getAnalysisFor("9ad9f468c083840b8946732c8896d842a4d7a5a2");
+		DebtIndex debtIndex = sonarQubeWorker.getDebtIndexFor("9ad9f468c083840b8946732c8896d842a4d7a5a2");
 		
 		
 		assert true;
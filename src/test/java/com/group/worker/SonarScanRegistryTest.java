@@ -0,0 +1,82 @@
+package com.group.worker;
+
+import com.group.Utils;
+import com.group.pojo.sonar.DebtIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SonarScanRegistryTest {
+
+	private Path dir;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		dir = Files.createTempDirectory("sonarScanRegistry");
+	}
+
+	@AfterEach
+	void tearDown() {
+		Utils.deleteDirectory(dir.toFile());
+	}
+
+	@Test
+	void scansAreKeyedByProjectAndSourcesPath() throws Exception {
+		Files.write(dir.resolve("sonarScannedCommits.txt"),
+				Arrays.asList("project_a1:src", "project_b2:other/src"), StandardCharsets.UTF_8);
+		List<String> scans = new ArrayList<>();
+		SonarScanRegistry registry = new SonarScanRegistry(dir.toString(), new StubWorker(true));
+
+		assertEquals(5, registry.getDebtIndex("a1", scans::add).get("com/group/Foo.java"));
+		assertEquals(5, registry.getDebtIndex("b2", scans::add).get("com/group/Foo.java"));
+
+		// b2 was scanned with another sources path
+		assertEquals(Collections.singletonList("b2"), scans);
+		assertTrue(Files.readAllLines(dir.resolve("sonarScannedCommits.txt")).contains("project_b2:src"));
+	}
+
+	@Test
+	void missingAnalysisOfPreviousRunIsScannedAgain() throws Exception {
+		Files.write(dir.resolve("sonarScannedCommits.txt"), Collections.singletonList("project_a1:src"),
+				StandardCharsets.UTF_8);
+		List<String> scans = new ArrayList<>();
+		StubWorker worker = new StubWorker(false);
+		SonarScanRegistry registry = new SonarScanRegistry(dir.toString(), worker);
+
+		DebtIndex debtIndex = registry.getDebtIndex("a1", hash -> {
+			scans.add(hash);
+			worker.analyzed = true;
+		});
+
+		assertEquals(Collections.singletonList("a1"), scans);
+		assertEquals(5, debtIndex.get("com/group/Foo.java"));
+	}
+
+	/**
+	 * Worker returning an empty component tree until the commit is analyzed
+	 */
+	private static class StubWorker extends SonarQubeWorker {
+		private boolean analyzed;
+
+		StubWorker(boolean analyzed) {
+			super("http://localhost", "sonar-scanner", "/tmp/project", "src");
+			this.analyzed = analyzed;
+		}
+
+		@Override
+		public DebtIndex getDebtIndexFor(String commitHash) {
+			return analyzed ? new DebtIndex.Builder().add("com/group/Foo.java", 5).build() : DebtIndex.EMPTY;
+		}
+	}
+}